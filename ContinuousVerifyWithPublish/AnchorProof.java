@@ -0,0 +1,145 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+
+/**
+ * Proves a row against the tip of its chain anchored on OBP by TipAnchor.
+ * The hash of every row from the row to the tip is recomputed from its bytes
+ * and the stored hash of the row before it , and must match its stored hash ,
+ * and the stored hash of the tip must match the anchored hash. The row then
+ * is exactly as it was when the tip was anchored.
+ */
+public class AnchorProof {
+
+    private static final Logger logger = Logger.getLogger(AnchorProof.class.getName());
+
+    /**
+     * Prove a row against the anchored tip of its chain.
+     *
+     * @param schema_name_int - Schema name
+     * @param table_name_int - Table name
+     * @param instance_id - Instance id
+     * @param chain_id - Chain id
+     * @param seq_no - Sequence number of the row
+     * @return - if the row is proven
+     */
+    public static boolean prove(String schema_name_int, String table_name_int, int instance_id, int chain_id, int seq_no) {
+        JSONArray args = new JSONArray();
+        args.put("readAnchor");
+        args.put(schema_name_int);
+        args.put(table_name_int);
+        args.put(DBUtils.getDBUtils().getDbGUID());
+        args.put(String.valueOf(instance_id));
+        args.put(String.valueOf(chain_id));
+        JSONObject anchor = OBPConnection.getInstance().fetchData(OBPUtils.getInstance().JSONBodyBuilder(args, Constants.OBP_GET));
+        if (anchor == null || !anchor.has("sequence_no")) {
+            System.err.println("No anchored tip for instance id : " + instance_id + " , chain id : " + chain_id);
+            return false;
+        }
+        int tip_seq = anchor.getInt("sequence_no");
+        if (tip_seq < seq_no) {
+            System.err.println("Sequence no : " + seq_no + " is above the anchored tip " + tip_seq + " for instance id : " + instance_id
+                    + " , chain id : " + chain_id);
+            return false;
+        }
+        Map<Integer, String> stored_hashes = fetchHashes(schema_name_int, table_name_int, instance_id, chain_id, seq_no - 1, tip_seq);
+        String filepath = IO.getIOInstance().getBytesFile().getPath();
+        for (int seq = seq_no; seq <= tip_seq; seq++) {
+            String expected_hash = stored_hashes.get(seq);
+            String previous_hash = stored_hashes.get(seq - 1);
+            if (expected_hash == null || (seq != 1 && previous_hash == null)) {
+                System.err.println("Missing row for instance id : " + instance_id + " , chain id : " + chain_id + " , sequence no : "
+                        + (expected_hash == null ? seq : seq - 1));
+                return false;
+            }
+            HashColumn.getHashColumnInstance().setPrev_hash(previous_hash);
+            VerifyWithPublish.getBytesForRowHash(schema_name_int, table_name_int, instance_id, chain_id, seq);
+            String calculated_hash = VerifyWithPublish.hashSHA512(filepath);
+            if (!calculated_hash.equalsIgnoreCase(expected_hash)) {
+                System.err.println("Hash Verification Failed for instance id : " + instance_id + " , chain id : " + chain_id + " , sequence no : " + seq);
+                System.err.println("Expected Hash : " + expected_hash);
+                System.err.println("GOT : " + calculated_hash);
+                return false;
+            }
+        }
+        if (!stored_hashes.get(tip_seq).equalsIgnoreCase(anchor.getString("hash"))) {
+            System.err.println("Stored hash of the tip differs from the anchored hash for instance id : " + instance_id + " , chain id : " + chain_id
+                    + " , sequence no : " + tip_seq);
+            System.err.println("Anchored Hash : " + anchor.getString("hash"));
+            System.err.println("Stored Hash : " + stored_hashes.get(tip_seq));
+            return false;
+        }
+        System.out.println("Proved sequence no : " + seq_no + " against the anchored tip " + tip_seq + " for instance id : " + instance_id
+                + " , chain id : " + chain_id + " , " + (tip_seq - seq_no + 1) + " rows hashed");
+        return true;
+    }
+
+    /* Stored hashes of a range of rows of a chain */
+    private static Map<Integer, String> fetchHashes(String schema_name_int, String table_name_int, int instance_id, int chain_id, int from_seq, int to_seq) {
+        Connection con = DBConnection.getInstance().getConnection();
+        Map<Integer, String> hashes = new HashMap<>();
+        String hash_qry = "select ORABCTAB_SEQ_NUM$ , ORABCTAB_HASH$ from " + DBUtils.getDBUtils().getTableRef(schema_name_int, table_name_int) + " "
+                + "where ORABCTAB_INST_ID$ = ? and ORABCTAB_CHAIN_ID$ = ? and ORABCTAB_SEQ_NUM$ between ? and ?";
+        try ( PreparedStatement hash_stmt = con.prepareStatement(hash_qry)) {
+            /* bind instance_id */
+            hash_stmt.setInt(1, instance_id);
+            /* bind chain_id */
+            hash_stmt.setInt(2, chain_id);
+            /* bind the range */
+            hash_stmt.setInt(3, from_seq);
+            hash_stmt.setInt(4, to_seq);
+            hash_stmt.setFetchSize(1000);
+            try ( ResultSet rs = hash_stmt.executeQuery()) {
+                while (rs.next()) {
+                    hashes.put(rs.getInt(1), rs.getString(2));
+                }
+            }
+        } catch (SQLException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        }
+        return hashes;
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 5) {
+            System.err.println("Invalid Number Of Arguments Supplied.");
+            System.err.println("Java program should be run using :");
+            System.err.println("java AnchorProof <SCHEMA> <TABLE> <INSTANCE_ID> <CHAIN_ID> <SEQUENCE_NO>");
+            throw new Error("Invalid Number Of Arguments Supplied.");
+        }
+        try {
+            final int INSTANCE_ID = Integer.parseInt(args[2]);
+            final int CHAIN_ID = Integer.parseInt(args[3]);
+            final int SEQUENCE_NO = Integer.parseInt(args[4]);
+            String schema_name_int = Utils.getUtils().cleanString(args[0], false);
+            String table_name_int = Utils.getUtils().cleanString(args[1], false);
+            if (Modes.getInstance().isMETADATA_CACHE()) {
+                MetadataCache.getInstance().initTableMetadata(schema_name_int, table_name_int);
+            }
+            IO.getIOInstance().setBytesFile(schema_name_int + "_" + table_name_int + "_" + DBUtils.getDBUtils().getDbGUID() + "_proof.dat");
+            HashColumn.initHashColumn(schema_name_int, table_name_int);
+            ColumnData.initColumnData(schema_name_int, table_name_int);
+            prove(schema_name_int, table_name_int, INSTANCE_ID, CHAIN_ID, SEQUENCE_NO);
+            IO.getIOInstance().getBytesFile().delete();
+            DBConnection.getInstance().closeConnection();
+        } catch (NumberFormatException ex) {
+            System.err.println("INSTANCE_ID , CHAIN_ID AND SEQUENCE_NO MUST BE INTEGERS");
+        }
+    }
+}
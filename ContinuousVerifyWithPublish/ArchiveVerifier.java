@@ -0,0 +1,216 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+
+/**
+ * Offline verification of chain archive segments exported by ChainArchive.
+ * Segments are verified in parallel on every available core without any
+ * database access. Each row hash is recomputed as SHA-512 of the archived row
+ * bytes followed by the stored hash of the previous row , as a database
+ * verification does with getBytesForRowHash() and hashSHA512().
+ */
+public class ArchiveVerifier {
+
+    private static final Logger logger = Logger.getLogger(ArchiveVerifier.class.getName());
+
+    /* Outcome of one segment */
+    private static class SegmentResult {
+
+        private String file;
+        private int instance_id;
+        private int chain_id;
+        private long first_seq;
+        private long last_seq;
+        private boolean has_prev;
+        private byte[] prev_hash;
+        private byte[] last_hash;
+        private int verify_count;
+        private int fail_count;
+    }
+
+    /**
+     * Verify every row of a segment.
+     *
+     * @param file - Segment file
+     * @return - Segment result
+     */
+    static SegmentResult verifySegment(String file) {
+        SegmentResult result = new SegmentResult();
+        result.file = file;
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-512");
+        } catch (NoSuchAlgorithmException ex) {
+            logger.log(Level.SEVERE, null, ex);
+            throw new Error("SHA-512 not available");
+        }
+        try ( DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(Utils.getUtils().cleanPath(file)), 64 * 1024), 64 * 1024))) {
+            if (in.readInt() != ChainArchive.MAGIC || in.readInt() != ChainArchive.VERSION) {
+                throw new Error("Not a chain archive segment : " + file);
+            }
+            result.instance_id = in.readInt();
+            result.chain_id = in.readInt();
+            result.first_seq = in.readLong();
+            result.has_prev = in.readByte() == 1;
+            result.prev_hash = new byte[ChainArchive.HASH_SIZE];
+            in.readFully(result.prev_hash);
+            byte[] prev_hash = result.has_prev ? result.prev_hash : null;
+            byte[] row_bytes = new byte[8 * 1024];
+            long previous_seq = result.first_seq - 1;
+            long count = 0;
+            while (true) {
+                long seq_no = in.readLong();
+                if (seq_no == -1) {
+                    if (in.readLong() != count) {
+                        throw new Error("Record count mismatch in chain archive segment : " + file);
+                    }
+                    break;
+                }
+                byte[] stored_hash = new byte[ChainArchive.HASH_SIZE];
+                in.readFully(stored_hash);
+                int length = in.readInt();
+                if (length > row_bytes.length) {
+                    row_bytes = new byte[Math.max(length, 2 * row_bytes.length)];
+                }
+                in.readFully(row_bytes, 0, length);
+                count++;
+                if (seq_no != previous_seq + 1) {
+                    result.fail_count++;
+                    System.err.println("Invalid Sequence for instance id : " + result.instance_id + " , chain id : " + result.chain_id + " , sequence no : " + seq_no);
+                } else if (prev_hash == null) {
+                    /* If the previous row no longer exists we assume the row is OK */
+                    result.verify_count++;
+                } else {
+                    md.update(row_bytes, 0, length);
+                    md.update(prev_hash);
+                    byte[] calculated_hash = md.digest();
+                    if (MessageDigest.isEqual(calculated_hash, stored_hash)) {
+                        result.verify_count++;
+                    } else {
+                        result.fail_count++;
+                        synchronized (System.err) {
+                            System.err.println("Hash Verification Failed for instance id : " + result.instance_id + " , chain id : " + result.chain_id + " , sequence no : " + seq_no);
+                            System.err.println("Expected Hash : " + Utils.getUtils().bytesToHex(stored_hash));
+                            System.err.println("GOT : " + Utils.getUtils().bytesToHex(calculated_hash));
+                        }
+                    }
+                }
+                previous_seq = seq_no;
+                prev_hash = stored_hash;
+            }
+            result.last_seq = previous_seq;
+            result.last_hash = prev_hash;
+        } catch (EOFException ex) {
+            throw new Error("Truncated chain archive segment : " + file);
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, null, ex);
+            throw new Error("Unable to read chain archive segment : " + file);
+        }
+        return result;
+    }
+
+    /**
+     * Verify segments in parallel and report the rows verified per chain.
+     * Consecutive segments of a chain must also link up : each segment starts
+     * after the last row of the previous one , with its stored hash.
+     *
+     * @param files - Segment files
+     * @return - Overall stats
+     */
+    public static Stats verify(List<String> files) {
+        Stats stats = new Stats();
+        ExecutorService workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        List<Future<SegmentResult>> futures = new ArrayList<>();
+        for (String file : files) {
+            futures.add(workers.submit(() -> verifySegment(file)));
+        }
+        List<SegmentResult> results = new ArrayList<>();
+        try {
+            for (Future<SegmentResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException ex) {
+                    stats.addFailure(1);
+                    System.err.println(ex.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException ex) {
+            logger.log(Level.SEVERE, null, ex);
+            Thread.currentThread().interrupt();
+        } finally {
+            workers.shutdownNow();
+        }
+        results.sort(Comparator.comparingInt((SegmentResult r) -> r.instance_id).thenComparingInt(r -> r.chain_id).thenComparingLong(r -> r.first_seq));
+        SegmentResult previous = null;
+        int verify_count = 0;
+        int fail_count = 0;
+        for (SegmentResult result : results) {
+            boolean same_chain = previous != null && previous.instance_id == result.instance_id && previous.chain_id == result.chain_id;
+            if (same_chain && (result.first_seq != previous.last_seq + 1 || !result.has_prev
+                    || !Arrays.equals(result.prev_hash, previous.last_hash))) {
+                fail_count++;
+                System.err.println("Chain archive segments do not link up for instance id : " + result.instance_id + " , chain id : " + result.chain_id
+                        + " , sequence no : " + result.first_seq + " (" + result.file + ")");
+            }
+            if (!same_chain && previous != null) {
+                report(previous, verify_count, fail_count, stats);
+                verify_count = 0;
+                fail_count = 0;
+            }
+            verify_count += result.verify_count;
+            fail_count += result.fail_count;
+            previous = result;
+        }
+        if (previous != null) {
+            report(previous, verify_count, fail_count, stats);
+        }
+        return stats;
+    }
+
+    private static void report(SegmentResult chain, int verify_count, int fail_count, Stats stats) {
+        System.out.println("Verified " + verify_count + " rows for instance id : " + chain.instance_id + " , chain id : " + chain.chain_id);
+        if (fail_count > 0) {
+            System.err.println("Failed to verify " + fail_count + " rows for instance id : " + chain.instance_id + " , chain id : " + chain.chain_id);
+        }
+        stats.addSuccess(verify_count);
+        stats.addFailure(fail_count);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Invalid Number Of Arguments Supplied.");
+            System.err.println("Java program should be run using :");
+            System.err.println("java ArchiveVerifier <ARCHIVE_FILE> [<ARCHIVE_FILE> ...]");
+            throw new Error("Invalid Number Of Arguments Supplied.");
+        }
+        Stats stats = verify(Arrays.asList(args));
+        System.out.println("Total rows verified : " + stats.getSuccess_count());
+        if (stats.getFail_count() > 0) {
+            System.err.println("Total rows failed verification : " + stats.getFail_count());
+        }
+    }
+}
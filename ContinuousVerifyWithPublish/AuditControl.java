@@ -0,0 +1,121 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Fail-fast control for incident response. The first confirmed hash mismatch
+ * cancels all outstanding verification work of the cycle and is reported
+ * immediately with its coordinates. Verification loops poll isCancelled()
+ * before fetching or hashing the next row.
+ */
+public class AuditControl {
+
+    private static AuditControl instance;
+    private static final Logger logger = Logger.getLogger(AuditControl.class.getName());
+    private volatile boolean cancelled;
+    private long cycle_start;
+    private int failed_instance_id;
+    private int failed_chain_id;
+    private int failed_seq_no;
+
+    public static AuditControl getInstance() {
+        if (instance == null) {
+            instance = new AuditControl();
+        }
+        return instance;
+    }
+
+    /* Start a new verification cycle */
+    public void reset() {
+        cancelled = false;
+        cycle_start = System.currentTimeMillis();
+    }
+
+    /* Has outstanding work been cancelled by a mismatch ? */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Record a confirmed hash mismatch. In fail-fast mode the first mismatch
+     * of a cycle cancels all outstanding work and is reported right away.
+     *
+     * @param instance_id - Instance id of the failing row
+     * @param chain_id - Chain id of the failing row
+     * @param seq_no - Sequence number of the failing row
+     */
+    public synchronized void reportMismatch(int instance_id, int chain_id, int seq_no) {
+        if (!Modes.getInstance().isFAIL_FAST() || cancelled) {
+            return;
+        }
+        failed_instance_id = instance_id;
+        failed_chain_id = chain_id;
+        failed_seq_no = seq_no;
+        cancelled = true;
+        System.err.println("FAIL FAST : first mismatch at instance id : " + instance_id + " , chain id : " + chain_id
+                + " , sequence no : " + seq_no + " after " + (System.currentTimeMillis() - cycle_start) + " ms. Cancelling verification.");
+    }
+
+    /**
+     * After a fail-fast cancellation , keep verifying only the failing chain
+     * from the failing row onwards to find the extent of the damage.
+     *
+     * @param filepath - File path
+     * @param schema_name_int - Schema name
+     * @param table_name_int - Table name
+     */
+    public void narrowFailedChain(String filepath, String schema_name_int, String table_name_int) {
+        if (!cancelled || !Modes.getInstance().isFAIL_FAST_NARROW()) {
+            return;
+        }
+        Connection con = DBConnection.getInstance().getConnection();
+        String seq_no_query = "select ORABCTAB_SEQ_NUM$ , ORABCTAB_HASH$ from " + DBUtils.getDBUtils().getTableRef(schema_name_int, table_name_int) + " "
+                + "where ORABCTAB_INST_ID$ = ? and ORABCTAB_CHAIN_ID$ = ? and ORABCTAB_SEQ_NUM$ >= ? ORDER BY ORABCTAB_SEQ_NUM$";
+        Stats chainStats = new Stats();
+        Integer first_bad = null;
+        Integer last_bad = null;
+        try ( PreparedStatement seq_no_stmt = con.prepareStatement(seq_no_query)) {
+            seq_no_stmt.setInt(1, failed_instance_id);
+            seq_no_stmt.setInt(2, failed_chain_id);
+            /* start at the failing row so the next row is checked against its stored hash */
+            seq_no_stmt.setInt(3, failed_seq_no);
+            try ( ResultSet seq_rs = seq_no_stmt.executeQuery()) {
+                String previous_hash = null;
+                while (seq_rs.next()) {
+                    int seq_no = seq_rs.getInt(1);
+                    String expected_hash = seq_rs.getString(2);
+                    if (seq_no > failed_seq_no) {
+                        if (VerifyWithPublish.verifyRow(filepath, schema_name_int, table_name_int, failed_instance_id, failed_chain_id, seq_no, previous_hash, expected_hash)) {
+                            chainStats.addSuccess(1);
+                        } else {
+                            chainStats.addFailure(1);
+                            first_bad = first_bad == null ? seq_no : first_bad;
+                            last_bad = seq_no;
+                        }
+                    }
+                    previous_hash = expected_hash;
+                }
+            }
+        } catch (SQLException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        }
+        System.out.println("Verified " + chainStats.getSuccess_count() + " rows after the first mismatch for instance id : "
+                + failed_instance_id + " , chain id : " + failed_chain_id);
+        if (chainStats.getFail_count() > 0) {
+            System.err.println("Failed to verify " + chainStats.getFail_count() + " more rows , sequence no : " + first_bad + " to " + last_bad);
+        }
+        System.out.println("");
+    }
+}
@@ -0,0 +1,329 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * Exports the hashed projection of every row to local archive segments , so
+ * ArchiveVerifier can recompute the row hashes offline. The table is read with
+ * a single query ordered by instance , chain and sequence number.
+ *
+ * Each row is stored with the bytes getBytesForRowHash() writes for it , except
+ * the trailing previous row hash. That hash is the stored hash of the previous
+ * row , so the verifier takes it from the previous record , or for the first
+ * record of a segment from the segment header.
+ *
+ * Segment file : "<schema>_<table>_<guid>_<instance_id>_<chain_id>_<first_seq>.bca"
+ * GZIP compressed , big endian :
+ * header  : magic(4) version(4) instance_id(4) chain_id(4) first_seq(8) has_prev(1) prev_hash(64)
+ * record  : sequence_no(8) stored_hash(64) length(4) row_bytes(length)
+ * trailer : -1(8) record_count(8)
+ *
+ * has_prev is 0 when the row before the first record no longer exists , the
+ * first record is then assumed OK as in a database verification.
+ */
+public class ChainArchive {
+
+    private static final Logger logger = Logger.getLogger(ChainArchive.class.getName());
+    public static final int MAGIC = 0x42434152;
+    public static final int VERSION = 1;
+    public static final int HASH_SIZE = 64;
+    /* First column of the row projection in the export query */
+    private static final int FIRST_COLUMN = 5;
+    private final String prefix;
+    private final int segment_rows;
+    private DataOutputStream out;
+    private File segment;
+    private File tmp;
+    private long segment_count;
+
+    private ChainArchive(String schema_name_int, String table_name_int) {
+        this.prefix = Utils.getUtils().cleanPath(schema_name_int + "_" + table_name_int + "_" + DBUtils.getDBUtils().getDbGUID() + "_");
+        this.segment_rows = Modes.getInstance().getARCHIVE_SEGMENT_ROWS();
+    }
+
+    /**
+     * Export the rows of a table , an instance or a chain.
+     *
+     * @param schema_name_int - Schema name
+     * @param table_name_int - Table name
+     * @param instance_id - Instance id , null for all instances
+     * @param chain_id - Chain id , null for all chains
+     */
+    public static void export(String schema_name_int, String table_name_int, Integer instance_id, Integer chain_id) {
+        new ChainArchive(schema_name_int, table_name_int).exportRows(schema_name_int, table_name_int, instance_id, chain_id);
+    }
+
+    private void exportRows(String schema_name_int, String table_name_int, Integer instance_id, Integer chain_id) {
+        Connection con = DBConnection.getInstance().getConnection();
+        List<ColumnData> columns = ColumnData.getColumnData();
+        StringBuilder export_query = new StringBuilder("select ORABCTAB_INST_ID$ , ORABCTAB_CHAIN_ID$ , ORABCTAB_SEQ_NUM$ , ORABCTAB_HASH$");
+        for (ColumnData data : columns) {
+            String column_name_quoted = Utils.getUtils().cleanString(data.getColumn_name(), true);
+            export_query.append(" , ").append(data.getColumn_type().equals(Constants.DB_JSON)
+                    ? "OSON_GET_CONTENT(" + column_name_quoted + ")" : column_name_quoted);
+        }
+        export_query.append(" from ").append(DBUtils.getDBUtils().getTableRef(schema_name_int, table_name_int));
+        if (instance_id != null) {
+            export_query.append(" where ORABCTAB_INST_ID$ = ?");
+            if (chain_id != null) {
+                export_query.append(" and ORABCTAB_CHAIN_ID$ = ?");
+            }
+        }
+        export_query.append(" ORDER BY ORABCTAB_INST_ID$ , ORABCTAB_CHAIN_ID$ , ORABCTAB_SEQ_NUM$");
+        long total = 0;
+        try ( PreparedStatement export_stmt = con.prepareStatement(export_query.toString())) {
+            if (instance_id != null) {
+                /* bind instance_id */
+                export_stmt.setInt(1, instance_id);
+                if (chain_id != null) {
+                    /* bind chain_id */
+                    export_stmt.setInt(2, chain_id);
+                }
+            }
+            export_stmt.setFetchSize(1000);
+            try ( ResultSet rs = export_stmt.executeQuery()) {
+                Integer curr_instance = null;
+                Integer curr_chain = null;
+                Integer previous_seq = null;
+                String previous_hash = null;
+                long chain_rows = 0;
+                ByteArrayOutputStream row_bytes = new ByteArrayOutputStream();
+                while (rs.next()) {
+                    int inst = rs.getInt(1);
+                    int chain = rs.getInt(2);
+                    int seq_no = rs.getInt(3);
+                    String row_hash = rs.getString(4);
+                    if (curr_instance == null || inst != curr_instance || chain != curr_chain) {
+                        if (curr_instance != null) {
+                            closeSegment();
+                            System.out.println("Archived " + chain_rows + " rows for instance id : " + curr_instance + " , chain id : " + curr_chain);
+                        }
+                        curr_instance = inst;
+                        curr_chain = chain;
+                        previous_seq = null;
+                        chain_rows = 0;
+                        /* The previous hash of the first row comes from the database , null if that row no longer exists */
+                        previous_hash = seq_no == 1 ? null
+                                : HashColumn.getHashColumnInstance().getRowHash(schema_name_int, table_name_int, inst, chain, seq_no - 1);
+                        openSegment(inst, chain, seq_no, seq_no == 1 || previous_hash != null, previous_hash);
+                    } else if (segment_count >= segment_rows) {
+                        closeSegment();
+                        openSegment(inst, chain, seq_no, true, previous_hash);
+                    }
+                    if (!VerifyWithPublish.verifySequence(previous_seq, seq_no)) {
+                        discardSegment();
+                        throw new Error("Invalid Sequence for instance id : " + inst + " , chain id : " + chain + " , sequence no : " + seq_no);
+                    }
+                    row_bytes.reset();
+                    writeRowBytes(rs, columns, row_bytes);
+                    out.writeLong(seq_no);
+                    writeHash(row_hash);
+                    out.writeInt(row_bytes.size());
+                    row_bytes.writeTo(out);
+                    segment_count++;
+                    chain_rows++;
+                    total++;
+                    previous_seq = seq_no;
+                    previous_hash = row_hash;
+                }
+                if (curr_instance != null) {
+                    closeSegment();
+                    System.out.println("Archived " + chain_rows + " rows for instance id : " + curr_instance + " , chain id : " + curr_chain);
+                }
+            }
+        } catch (SQLException | IOException ex) {
+            logger.log(Level.SEVERE, null, ex);
+            discardSegment();
+            throw new Error("Chain archive export failed");
+        }
+        System.out.println("Archived " + total + " rows");
+    }
+
+    /**
+     * Writes the row bytes of the current row of the export query , the same
+     * bytes getBytesForRowHash() writes before the previous row hash.
+     */
+    private static void writeRowBytes(ResultSet rs, List<ColumnData> columns, ByteArrayOutputStream byteStream) throws SQLException, IOException {
+        Integer cert_id_pos = null;
+        Integer sign_algo_pos = null;
+        byte[] cert_id = null;
+        byte[] sign_algo = null;
+        byte[] spare_col = null;
+        int index = FIRST_COLUMN;
+        for (ColumnData data : columns) {
+            String column_name = data.getColumn_name();
+            String column_type = data.getColumn_type();
+            int col_pos = data.getColumn_position();
+            int column = index++;
+            /* Signature columns are only written as flagged by the spare column */
+            if (column_name.equals(Constants.DB_SIG_ALGO)) {
+                sign_algo_pos = col_pos;
+                sign_algo = rs.getBytes(column);
+                continue;
+            } else if (column_name.equals(Constants.DB_SIG_CERT)) {
+                cert_id_pos = col_pos;
+                cert_id = rs.getBytes(column);
+                continue;
+            } else if (column_name.equals(Constants.DB_BC_SPARE)) {
+                spare_col = rs.getBytes(column);
+                continue;
+            }
+            byte[] temp_bytes = null;
+            int column_isnull = 0;
+            switch (column_type) {
+                case Constants.DB_CLOB: {
+                    Clob temp_val = rs.getClob(column);
+                    if (temp_val == null) {
+                        byteStream.write(VerifyWithPublish.populateMetadata(col_pos, column_type, 1, 0));
+                    } else {
+                        byteStream.write(VerifyWithPublish.populateMetadata(col_pos, column_type, 0, temp_val.length() * 2));
+                        DBUtils.getDBUtils().writeClob(temp_val, byteStream);
+                    }
+                    continue;
+                }
+                case Constants.DB_NCLOB: {
+                    NClob temp_val = rs.getNClob(column);
+                    if (temp_val == null) {
+                        byteStream.write(VerifyWithPublish.populateMetadata(col_pos, column_type, 1, 0));
+                    } else {
+                        byteStream.write(VerifyWithPublish.populateMetadata(col_pos, column_type, 0, temp_val.length() * 2));
+                        DBUtils.getDBUtils().writeNClob(temp_val, byteStream);
+                    }
+                    continue;
+                }
+                case Constants.DB_BLOB: {
+                    Blob temp_val = rs.getBlob(column);
+                    if (temp_val == null) {
+                        byteStream.write(VerifyWithPublish.populateMetadata(col_pos, column_type, 1, 0));
+                    } else {
+                        byteStream.write(VerifyWithPublish.populateMetadata(col_pos, column_type, 0, temp_val.length()));
+                        DBUtils.getDBUtils().writeBlob(temp_val, byteStream);
+                    }
+                    continue;
+                }
+                case Constants.DB_VARCHAR:
+                case Constants.DB_CHAR:
+                case Constants.DB_NVARCHAR:
+                case Constants.DB_NCHAR: {
+                    String temp_val = (column_type.equals(Constants.DB_VARCHAR) || column_type.equals(Constants.DB_CHAR))
+                            ? rs.getString(column) : rs.getNString(column);
+                    if (temp_val == null) {
+                        column_isnull = 1;
+                    } else {
+                        temp_bytes = VerifyWithPublish.stringBytes(column_type, temp_val);
+                    }
+                    break;
+                }
+                default:
+                    temp_bytes = rs.getBytes(column);
+                    if (rs.wasNull()) {
+                        column_isnull = 1;
+                    }
+                    break;
+            }
+            long column_length = temp_bytes == null ? 0 : temp_bytes.length;
+            byteStream.write(VerifyWithPublish.populateMetadata(col_pos, column_type, column_isnull, column_length));
+            if (column_length != 0) {
+                byteStream.write(temp_bytes);
+            }
+        }
+        if (spare_col != null) {
+            VerifyWithPublish.writeSpareColumnData(byteStream, sign_algo_pos, cert_id_pos, sign_algo, cert_id, spare_col);
+        }
+        /* metadata of the hash column , followed by the previous row hash when verifying */
+        byteStream.write(VerifyWithPublish.populateMetadata(HashColumn.getHashColumnInstance().getColumn_position(),
+                HashColumn.getHashColumnInstance().getColumn_type(), 0, 64));
+    }
+
+    /* Start a segment , written to a temporary file until it is complete */
+    private void openSegment(int instance_id, int chain_id, long first_seq, boolean has_prev, String prev_hash) throws IOException {
+        segment = new File(prefix + instance_id + "_" + chain_id + "_" + first_seq + ".bca");
+        tmp = new File(segment.getPath() + ".tmp");
+        out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp), 64 * 1024), 64 * 1024));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(instance_id);
+        out.writeInt(chain_id);
+        out.writeLong(first_seq);
+        out.writeByte(has_prev ? 1 : 0);
+        writeHash(prev_hash);
+        segment_count = 0;
+    }
+
+    /* Finish the current segment and move it into place */
+    private void closeSegment() throws IOException {
+        out.writeLong(-1);
+        out.writeLong(segment_count);
+        out.close();
+        out = null;
+        Files.move(tmp.toPath(), segment.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /* Drop an unfinished segment */
+    private void discardSegment() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE, null, ex);
+            }
+            tmp.delete();
+        }
+    }
+
+    /* 64 hash bytes , all zero when there is no hash */
+    private void writeHash(String hash) throws IOException {
+        byte[] bytes = hash == null ? new byte[HASH_SIZE] : ByteBuffer.allocate(HASH_SIZE).put(Utils.getUtils().hexToBytes(hash)).array();
+        out.write(bytes);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2 || args.length > 4) {
+            System.err.println("Invalid Number Of Arguments Supplied.");
+            System.err.println("Java program should be run using :");
+            System.err.println("java ChainArchive <SCHEMA> <TABLE> <INSTANCE_ID - OPTIONAL> <CHAIN_ID - OPTIONAL>");
+            throw new Error("Invalid Number Of Arguments Supplied.");
+        }
+        try {
+            final Integer INSTANCE_ID = args.length >= 3 ? Integer.parseInt(args[2]) : null;
+            final Integer CHAIN_ID = args.length == 4 ? Integer.parseInt(args[3]) : null;
+            String schema_name_int = Utils.getUtils().cleanString(args[0], false);
+            String table_name_int = Utils.getUtils().cleanString(args[1], false);
+            if (Modes.getInstance().isMETADATA_CACHE()) {
+                MetadataCache.getInstance().initTableMetadata(schema_name_int, table_name_int);
+            }
+            HashColumn.initHashColumn(schema_name_int, table_name_int);
+            ColumnData.initColumnData(schema_name_int, table_name_int);
+            export(schema_name_int, table_name_int, INSTANCE_ID, CHAIN_ID);
+            DBConnection.getInstance().closeConnection();
+        } catch (NumberFormatException ex) {
+            System.err.println("INSTANCE_ID OR CHAIN_ID MUST BE AN INTEGER");
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Structural pre-pass over the chains of a blockchain table. One grouped
+ * aggregate finds chains whose sequence numbers have gaps , duplicates or a
+ * truncated tail , and range counts localize the gaps before any row bytes
+ * are fetched. Unhealthy chains are reported and skipped so that the healthy
+ * chains are still verified.
+ */
+public class ChainIntegrity {
+
+    private static ChainIntegrity instance;
+    private static final Logger logger = Logger.getLogger(ChainIntegrity.class.getName());
+    /* Ranges at most this wide are localized by listing their sequence numbers */
+    private static final long SCAN_WIDTH = 256;
+    /* "<instance_id>_<chain_id>" of chains failing the pre-pass */
+    private final Set<String> unhealthy = new HashSet<>();
+
+    public static ChainIntegrity getInstance() {
+        if (instance == null) {
+            instance = new ChainIntegrity();
+        }
+        return instance;
+    }
+
+    /* Is this chain excluded from verification by the pre-pass ? */
+    public boolean isUnhealthy(int instance_id, int chain_id) {
+        return unhealthy.contains(instance_id + "_" + chain_id);
+    }
+
+    /**
+     * Check the sequence numbers of all chains.
+     *
+     * @param schema_name_int - Schema name
+     * @param table_name_int - Table name
+     * @param instance_id - Restrict to this instance , null for all instances
+     * @param chain_id - Restrict to this chain , null for all chains
+     */
+    public void check(String schema_name_int, String table_name_int, Integer instance_id, Integer chain_id) {
+        unhealthy.clear();
+        List<ChainSummary> chains = ChainSummary.getChainSummaries(schema_name_int, table_name_int, instance_id, chain_id);
+        for (ChainSummary chain : chains) {
+            int inst = chain.getInstance_id();
+            int chain_no = chain.getChain_id();
+            long expected_rows = chain.getMax_seq() - chain.getMin_seq() + 1;
+            long checkpoint = CheckPoint.getInstance().getSequenceValue(inst, chain_no);
+            boolean healthy = true;
+            if (chain.getMax_seq() < checkpoint) {
+                healthy = false;
+                System.err.println("Chain truncated for instance id : " + inst + " , chain id : " + chain_no
+                        + " , last sequence no : " + chain.getMax_seq() + " , previously verified up to : " + checkpoint);
+            }
+            /* A duplicate and a gap leave the row count unchanged , the distinct count tells them apart */
+            if (chain.getRow_count() != expected_rows || chain.getDistinct_count() != expected_rows) {
+                healthy = false;
+                localize(schema_name_int, table_name_int, inst, chain_no, chain.getMin_seq(), chain.getMax_seq());
+            }
+            if (chain.getMin_seq() > 1) {
+                /* Expired rows may have been deleted from the start of a chain */
+                System.out.println("Chain starts at sequence no : " + chain.getMin_seq() + " for instance id : " + inst + " , chain id : " + chain_no);
+            }
+            if (!healthy) {
+                unhealthy.add(inst + "_" + chain_no);
+            }
+        }
+        System.out.println("Integrity pre-pass checked " + chains.size() + " chains , " + unhealthy.size() + " unhealthy");
+        System.out.println("");
+    }
+
+    /* Bisect a range of sequence numbers using range counts and report its gaps and duplicates */
+    private void localize(String schema_name_int, String table_name_int, int instance_id, int chain_id, long low, long high) {
+        long width = high - low + 1;
+        if (width <= SCAN_WIDTH) {
+            scan(schema_name_int, table_name_int, instance_id, chain_id, low, high);
+            return;
+        }
+        long mid = low + width / 2 - 1;
+        if (!isComplete(schema_name_int, table_name_int, instance_id, chain_id, low, mid)) {
+            localize(schema_name_int, table_name_int, instance_id, chain_id, low, mid);
+        }
+        if (!isComplete(schema_name_int, table_name_int, instance_id, chain_id, mid + 1, high)) {
+            localize(schema_name_int, table_name_int, instance_id, chain_id, mid + 1, high);
+        }
+    }
+
+    /* Does every sequence number in the range appear exactly once ? */
+    private boolean isComplete(String schema_name_int, String table_name_int, int instance_id, int chain_id, long low, long high) {
+        Connection con = DBConnection.getInstance().getConnection();
+        String count_qry = "select count(*) , count(distinct ORABCTAB_SEQ_NUM$) from " + DBUtils.getDBUtils().getTableRef(schema_name_int, table_name_int) + " "
+                + "where ORABCTAB_INST_ID$ = ? and ORABCTAB_CHAIN_ID$ = ? and ORABCTAB_SEQ_NUM$ between ? and ?";
+        try ( PreparedStatement count_stmt = con.prepareStatement(count_qry)) {
+            count_stmt.setInt(1, instance_id);
+            count_stmt.setInt(2, chain_id);
+            count_stmt.setLong(3, low);
+            count_stmt.setLong(4, high);
+            try ( ResultSet rs = count_stmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getLong(1) == high - low + 1 && rs.getLong(2) == high - low + 1;
+                }
+            }
+        } catch (SQLException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        }
+        return false;
+    }
+
+    /* List the sequence numbers of a narrow range and report every gap and duplicate */
+    private void scan(String schema_name_int, String table_name_int, int instance_id, int chain_id, long low, long high) {
+        Connection con = DBConnection.getInstance().getConnection();
+        String seq_qry = "select ORABCTAB_SEQ_NUM$ from " + DBUtils.getDBUtils().getTableRef(schema_name_int, table_name_int) + " "
+                + "where ORABCTAB_INST_ID$ = ? and ORABCTAB_CHAIN_ID$ = ? and ORABCTAB_SEQ_NUM$ between ? and ? ORDER BY ORABCTAB_SEQ_NUM$";
+        try ( PreparedStatement seq_stmt = con.prepareStatement(seq_qry)) {
+            seq_stmt.setInt(1, instance_id);
+            seq_stmt.setInt(2, chain_id);
+            seq_stmt.setLong(3, low);
+            seq_stmt.setLong(4, high);
+            try ( ResultSet rs = seq_stmt.executeQuery()) {
+                long expected = low;
+                while (rs.next()) {
+                    long seq_no = rs.getLong(1);
+                    if (seq_no < expected) {
+                        System.err.println("Duplicate sequence no : " + seq_no + " for instance id : " + instance_id + " , chain id : " + chain_id);
+                    } else if (seq_no > expected) {
+                        System.err.println("Missing sequence no : " + expected + " to " + (seq_no - 1) + " for instance id : " + instance_id + " , chain id : " + chain_id);
+                    }
+                    expected = Math.max(expected, seq_no + 1);
+                }
+                if (expected <= high) {
+                    System.err.println("Missing sequence no : " + expected + " to " + high + " for instance id : " + instance_id + " , chain id : " + chain_id);
+                }
+            }
+        } catch (SQLException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        }
+    }
+}
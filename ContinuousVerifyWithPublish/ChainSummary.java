@@ -0,0 +1,100 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Row count , distinct sequence number count and sequence number bounds of a
+ * single chain , fetched for all chains of a blockchain table with one grouped
+ * aggregate.
+ */
+public class ChainSummary {
+
+    final private int instance_id;
+    final private int chain_id;
+    final private long row_count;
+    final private long distinct_count;
+    final private long min_seq;
+    final private long max_seq;
+    private static final Logger logger = Logger.getLogger(ChainSummary.class.getName());
+
+    private ChainSummary(int instance_id, int chain_id, long row_count, long distinct_count, long min_seq, long max_seq) {
+        this.instance_id = instance_id;
+        this.chain_id = chain_id;
+        this.row_count = row_count;
+        this.distinct_count = distinct_count;
+        this.min_seq = min_seq;
+        this.max_seq = max_seq;
+    }
+
+    /**
+     * Get the summary of every chain in a blockchain table.
+     *
+     * @param schema_name_int - Schema name
+     * @param table_name_int - Table name
+     * @param instance_id - Restrict to this instance , null for all instances
+     * @param chain_id - Restrict to this chain , null for all chains
+     * @return - Chain summaries ordered by instance id and chain id
+     */
+    public static List<ChainSummary> getChainSummaries(String schema_name_int, String table_name_int, Integer instance_id, Integer chain_id) {
+        Connection con = DBConnection.getInstance().getConnection();
+        List<ChainSummary> summaries = new ArrayList<>();
+        String summary_qry = "select ORABCTAB_INST_ID$ , ORABCTAB_CHAIN_ID$ , count(*) , count(distinct ORABCTAB_SEQ_NUM$) , min(ORABCTAB_SEQ_NUM$) , max(ORABCTAB_SEQ_NUM$) from "
+                + DBUtils.getDBUtils().getTableRef(schema_name_int, table_name_int) + " "
+                + "where (? is null or ORABCTAB_INST_ID$ = ?) and (? is null or ORABCTAB_CHAIN_ID$ = ?) "
+                + "group by ORABCTAB_INST_ID$ , ORABCTAB_CHAIN_ID$ order by ORABCTAB_INST_ID$ , ORABCTAB_CHAIN_ID$";
+        try ( PreparedStatement summary_stmt = con.prepareStatement(summary_qry)) {
+            /* bind instance_id filter */
+            summary_stmt.setObject(1, instance_id, java.sql.Types.INTEGER);
+            summary_stmt.setObject(2, instance_id, java.sql.Types.INTEGER);
+            /* bind chain_id filter */
+            summary_stmt.setObject(3, chain_id, java.sql.Types.INTEGER);
+            summary_stmt.setObject(4, chain_id, java.sql.Types.INTEGER);
+            try ( ResultSet rs = summary_stmt.executeQuery()) {
+                while (rs.next()) {
+                    summaries.add(new ChainSummary(rs.getInt(1), rs.getInt(2), rs.getLong(3), rs.getLong(4), rs.getLong(5), rs.getLong(6)));
+                }
+            }
+        } catch (SQLException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        }
+        return summaries;
+    }
+
+    public int getInstance_id() {
+        return instance_id;
+    }
+
+    public int getChain_id() {
+        return chain_id;
+    }
+
+    public long getRow_count() {
+        return row_count;
+    }
+
+    public long getDistinct_count() {
+        return distinct_count;
+    }
+
+    public long getMin_seq() {
+        return min_seq;
+    }
+
+    public long getMax_seq() {
+        return max_seq;
+    }
+}
@@ -9,9 +9,13 @@
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.json.JSONArray;
@@ -22,7 +26,24 @@ import org.json.JSONTokener;
 public class CheckPoint {
 
     private static CheckPoint instance;
-    private JSONObject localObject;
+    /* "<instance_id>_<chain_id>" -> {last seen sequence_no , scn} */
+    private Map<String, long[]> sequences;
+    /* "<instance_id>_<chain_id>" -> stored hash of the last verified row */
+    private final Map<String, String> row_hashes = new HashMap<>();
+    /* Chains changed since the last export */
+    private final Map<String, long[]> dirty = new HashMap<>();
+    private long snapshot_scn;
+    private long table_key;
+    /* Background flushes keep durable checkpoint writes off the verification path */
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "checkpoint-flusher");
+        t.setDaemon(true);
+        return t;
+    });
+    /* Is a background flush already queued ? Requests arriving meanwhile are coalesced into it */
+    private final AtomicBoolean flush_pending = new AtomicBoolean();
+    /* Serializes background flushes with the end of cycle export */
+    private final Object export_lock = new Object();
     private static final Logger logger = Logger.getLogger(CheckPoint.class.getName());
 
     /* Get checkpoint instance */
@@ -35,7 +56,7 @@ public class CheckPoint {
 
     /* Initialize checkpoint data to the point where we stopped */
     public void initCheckPoints(String schema, String table) {
-        if (localObject == null) {
+        if (sequences == null) {
             int mode = Modes.getInstance().getCONTINUOUS_VERIFICATION_MODE();
             if (mode == Constants.MODE_LOCAL) {
                 initCheckPointsLocal(schema, table);
@@ -48,94 +69,189 @@ public class CheckPoint {
     /* Make a savepoint */
     public void exportCheckPoints(String schema, String table) {
         int mode = Modes.getInstance().getCONTINUOUS_VERIFICATION_MODE();
-        if (mode == Constants.MODE_LOCAL) {
-            exportCheckPointsLocal(schema, table);
-        } else if (mode == Constants.MODE_OBP) {
-            exportCheckPointsOBP(schema, table);
+        synchronized (export_lock) {
+            if (mode == Constants.MODE_LOCAL) {
+                exportCheckPointsLocal(schema, table);
+            } else if (mode == Constants.MODE_OBP) {
+                exportCheckPointsOBP(schema, table);
+            }
+        }
+    }
+
+    /**
+     * Make a savepoint in the background while verification continues. At most
+     * one flush is queued at a time , later requests are covered by the queued
+     * flush since it exports whatever has changed when it runs. In OBP mode
+     * the flush is skipped unless the logs of the verified rows are already
+     * durable , see isFlushDurable().
+     *
+     * @param schema - Schema name
+     * @param table - Table name
+     */
+    public void flushCheckPoints(String schema, String table) {
+        int mode = Modes.getInstance().getCONTINUOUS_VERIFICATION_MODE();
+        if (mode == Constants.MODE_OFF || (mode == Constants.MODE_OBP && !isFlushDurable())) {
+            return;
+        }
+        if (flush_pending.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                flush_pending.set(false);
+                try {
+                    if (mode == Constants.MODE_OBP && OBPUtils.getInstance().isPublish_outbox()) {
+                        PublishOutbox.getInstance(schema, table).sync();
+                    }
+                    exportCheckPoints(schema, table);
+                } catch (RuntimeException ex) {
+                    logger.log(Level.SEVERE, null, ex);
+                }
+            });
+        }
+    }
+
+    /*
+     * Can a savepoint be made in the middle of an OBP cycle ? Only when every
+     * log queued so far is already posted or kept in the outbox. Logs waiting
+     * in LogBatcher or CommitTracker , an open Merkle batch or tips not yet
+     * anchored are only flushed at the end of the cycle.
+     */
+    private static boolean isFlushDurable() {
+        OBPUtils obp = OBPUtils.getInstance();
+        if (obp.isObp_anchor_tips() || obp.isObp_merkle_batches() || obp.isObp_signed_digest()) {
+            return false;
         }
+        return obp.isPublish_outbox() || (obp.getObp_batch_size() <= 1 && !obp.isObp_async_submit());
     }
 
     /* Get the last seen sequence value for this chain_id */
-    public int getSequenceValue(Integer instance_id, Integer chain_id) {
+    public synchronized long getSequenceValue(Integer instance_id, Integer chain_id) {
         int CONTINUOUS_VERIFICATION_MODE = Modes.getInstance().getCONTINUOUS_VERIFICATION_MODE();
         if (CONTINUOUS_VERIFICATION_MODE == Constants.MODE_OFF) {
             return 0;
         }
-        /* If the local object doesn't know this instance. We create a new array */
-        if (!localObject.has(instance_id.toString())) {
-            JSONArray jSONArray = new JSONArray(new int[32]);
-            localObject.put(instance_id.toString(), jSONArray);
+        long[] checkpoint = sequences.get(instance_id + "_" + chain_id);
+        return checkpoint == null ? 0 : checkpoint[0];
+    }
+
+    /* Get the stored hash of the last verified row for this chain_id , null if not known */
+    public synchronized String getLastSeenHash(Integer instance_id, Integer chain_id) {
+        int CONTINUOUS_VERIFICATION_MODE = Modes.getInstance().getCONTINUOUS_VERIFICATION_MODE();
+        if (CONTINUOUS_VERIFICATION_MODE == Constants.MODE_OFF) {
+            return null;
         }
-        return (int) localObject.getJSONArray(instance_id.toString()).get(chain_id);
+        return row_hashes.get(instance_id + "_" + chain_id);
     }
 
-    /* Set the last seen sequence value for this chain_id */
-    public void setLastSeenSequence(Integer instance_id, Integer chain_id, Integer sequence_no) {
+    /* Set the last seen sequence value for this chain_id , with the stored hash of that row */
+    public synchronized void setLastSeenSequence(Integer instance_id, Integer chain_id, long sequence_no, String row_hash) {
         int CONTINUOUS_VERIFICATION_MODE = Modes.getInstance().getCONTINUOUS_VERIFICATION_MODE();
         if (CONTINUOUS_VERIFICATION_MODE == Constants.MODE_OFF) {
             return;
         }
-        localObject.getJSONArray(instance_id.toString()).put(chain_id.intValue(), sequence_no);
+        long[] checkpoint = new long[]{sequence_no, snapshot_scn};
+        sequences.put(instance_id + "_" + chain_id, checkpoint);
+        if (row_hash != null) {
+            row_hashes.put(instance_id + "_" + chain_id, row_hash);
+        } else {
+            row_hashes.remove(instance_id + "_" + chain_id);
+        }
+        dirty.put(instance_id + "_" + chain_id, checkpoint);
+    }
+
+    /* Record the SCN the checkpointed sequence numbers were read as of */
+    public synchronized void setSnapshotScn(long scn) {
+        snapshot_scn = scn;
     }
 
-    /* Export checkpoints in a local file */
+    /* Write the changed chains into their slots of the binary checkpoint store , once their log records are durable */
     private void exportCheckPointsLocal(String schema, String table) {
-        FileWriter fileWriter = null;
-        try {
-            String db_guid = DBUtils.getDBUtils().getDbGUID();
-            String file = schema + "_" + table + "_" + db_guid + ".json";
-            fileWriter = new FileWriter(Utils.getUtils().cleanPath(file));
-            fileWriter.write(localObject.toString());
-        } catch (IOException ex) {
-            logger.log(Level.SEVERE, null, ex);
-        } finally {
-            try {
-                if (fileWriter != null) {
-                    fileWriter.close();
-                }
-            } catch (IOException ex) {
-                logger.log(Level.SEVERE, null, ex);
-            }
+        CheckPointStore store = CheckPointStore.getInstance();
+        Map<String, long[]> changed;
+        Map<String, String> hashes;
+        synchronized (this) {
+            changed = new HashMap<>(dirty);
+            hashes = new HashMap<>(row_hashes);
+            dirty.clear();
+        }
+        /* The records of these rows were queued before their checkpoints were set */
+        LogWriter.getInstance(schema, table).sync();
+        for (Map.Entry<String, long[]> entry : changed.entrySet()) {
+            String[] ids = entry.getKey().split("_");
+            store.update(table_key, Integer.parseInt(ids[0]), Integer.parseInt(ids[1]), entry.getValue()[0], entry.getValue()[1],
+                    hashes.get(entry.getKey()));
         }
+        store.force();
     }
 
     /* Export Checkpoints to OBP */
     private void exportCheckPointsOBP(String schema, String table) {
+        /* Build the metadata object : one array of sequence numbers indexed by chain id per instance */
+        JSONObject metadata = new JSONObject();
+        Map<String, JSONArray> instances = new HashMap<>();
+        Map<String, long[]> current;
+        long scn;
+        JSONObject tips = new JSONObject();
+        synchronized (this) {
+            current = new HashMap<>(sequences);
+            scn = snapshot_scn;
+            for (Map.Entry<String, String> entry : row_hashes.entrySet()) {
+                tips.put(entry.getKey(), entry.getValue());
+            }
+            dirty.clear();
+        }
+        /* Row logs kept locally must be durable before the checkpoint that covers them */
+        if (OBPUtils.getInstance().isObp_anchor_tips() || OBPUtils.getInstance().isObp_merkle_batches()
+                || OBPUtils.getInstance().isObp_signed_digest()) {
+            LogWriter.getInstance(schema, table).sync();
+        }
+        for (Map.Entry<String, long[]> entry : current.entrySet()) {
+            String[] ids = entry.getKey().split("_");
+            JSONArray chains = instances.computeIfAbsent(ids[0], k -> new JSONArray(new int[32]));
+            chains.put(Integer.parseInt(ids[1]), entry.getValue()[0]);
+        }
+        for (Map.Entry<String, JSONArray> entry : instances.entrySet()) {
+            metadata.put(entry.getKey(), entry.getValue());
+        }
+        if (scn != 0) {
+            metadata.put("snapshot_scn", scn);
+        }
+        /* Stored hash of the last verified row of each chain , as "<instance_id>_<chain_id>" -> hash */
+        metadata.put("row_hashes", tips);
         /* Build the arguments array */
         JSONArray args = new JSONArray();
         args.put("writeMetadata");
         args.put(schema);
         args.put(table);
         args.put(DBUtils.getDBUtils().getDbGUID());
-        args.put(localObject.toString());
+        args.put(metadata.toString());
         /* Get the JSON Body to send as a part of the request */
         String jsonBody = OBPUtils.getInstance().JSONBodyBuilder(args, Constants.OBP_POST);
         OBPConnection.getInstance().postData(jsonBody);
     }
 
-    /* Initialize checkpoints from a local file */
+    /* Initialize checkpoints from the binary checkpoint store , importing a legacy JSON checkpoint file once */
     private void initCheckPointsLocal(String schema, String table) {
-        InputStream is = null;
-        try {
-            String db_guid = DBUtils.getDBUtils().getDbGUID();
-            String file = schema + "_" + table + "_" + db_guid + ".json";
-            File f = new File(Utils.getUtils().cleanPath(file));
-            if (!f.exists()) {
-                localObject = new JSONObject();
-            } else {
-                is = new FileInputStream(f);
-                JSONTokener jSONTokener = new JSONTokener(is);
-                localObject = new JSONObject(jSONTokener);
-            }
-        } catch (FileNotFoundException ex) {
-            logger.log(Level.SEVERE, null, ex);
-        } finally {
+        String db_guid = DBUtils.getDBUtils().getDbGUID();
+        table_key = CheckPointStore.getTableKey(schema, table, db_guid);
+        sequences = CheckPointStore.getInstance().load(table_key, row_hashes);
+        File legacy = new File(Utils.getUtils().cleanPath(schema + "_" + table + "_" + db_guid + ".json"));
+        if (sequences.isEmpty() && legacy.exists()) {
+            InputStream is = null;
             try {
-                if (is != null) {
-                    is.close();
-                }
-            } catch (IOException ex) {
+                is = new FileInputStream(legacy);
+                readMetadata(new JSONObject(new JSONTokener(is)));
+                dirty.putAll(sequences);
+                exportCheckPointsLocal(schema, table);
+                System.out.println("Imported checkpoints from " + legacy.getName());
+            } catch (FileNotFoundException ex) {
                 logger.log(Level.SEVERE, null, ex);
+            } finally {
+                try {
+                    if (is != null) {
+                        is.close();
+                    }
+                } catch (IOException ex) {
+                    logger.log(Level.SEVERE, null, ex);
+                }
             }
         }
     }
@@ -148,6 +264,36 @@ public class CheckPoint {
         args.put(table);
         args.put(DBUtils.getDBUtils().getDbGUID());
         String jsonBody = OBPUtils.getInstance().JSONBodyBuilder(args, Constants.OBP_GET);
-        localObject = OBPConnection.getInstance().fetchData(jsonBody);
+        sequences = new HashMap<>();
+        JSONObject metadata = OBPConnection.getInstance().fetchData(jsonBody);
+        if (metadata != null) {
+            readMetadata(metadata);
+        }
+    }
+
+    /* Read the sequence numbers of a metadata object into the checkpoints */
+    private void readMetadata(JSONObject metadata) {
+        if (sequences == null) {
+            sequences = new HashMap<>();
+        }
+        long scn = metadata.optLong("snapshot_scn", 0);
+        JSONObject tips = metadata.optJSONObject("row_hashes");
+        if (tips != null) {
+            for (String key : tips.keySet()) {
+                row_hashes.put(key, tips.getString(key));
+            }
+        }
+        for (String instance_id : metadata.keySet()) {
+            JSONArray chains = metadata.optJSONArray(instance_id);
+            if (chains == null) {
+                continue;
+            }
+            for (int chain_id = 0; chain_id < chains.length(); chain_id++) {
+                long sequence_no = chains.optLong(chain_id, 0);
+                if (sequence_no > 0) {
+                    sequences.put(instance_id + "_" + chain_id, new long[]{sequence_no, scn});
+                }
+            }
+        }
     }
 }
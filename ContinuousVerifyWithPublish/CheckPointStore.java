@@ -0,0 +1,305 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+
+/**
+ * Binary checkpoint store shared by all tables. The file is memory mapped and
+ * holds one fixed-size record per (table , instance , chain). Every record has
+ * two slots , each carrying a generation number and a CRC32. An update always
+ * overwrites the older slot , so a crash in the middle of a write leaves the
+ * other slot , holding the previous checkpoint , intact. A slot also keeps the
+ * stored hash of the last verified row , all zero when it is not known.
+ *
+ * Verifier processes of different tables share the file. Creating the header
+ * and appending records happen under an exclusive FileLock , after picking up
+ * the records other processes appended , so two processes never claim the same
+ * record. Each process only writes the slots of the records of its own tables.
+ *
+ * File layout (big endian):
+ * header  : magic(4) version(4) record_size(4) record_count(4) , padded to 64 bytes
+ * record  : table_key(8) instance_id(4) chain_id(4) slot A(96) slot B(96)
+ * slot    : generation(8) sequence_no(8) scn(8) row_hash(64) crc32(4) reserved(4)
+ */
+public class CheckPointStore {
+
+    private static CheckPointStore instance;
+    private static CheckPointStore watermark_instance;
+    private static final Logger logger = Logger.getLogger(CheckPointStore.class.getName());
+    private static final int MAGIC = 0x42434350;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int HASH_SIZE = 64;
+    private static final int SLOT_SIZE = 32 + HASH_SIZE;
+    /* Offset of the CRC32 within a slot */
+    private static final int SLOT_CRC = 24 + HASH_SIZE;
+    private static final int RECORD_SIZE = 16 + 2 * SLOT_SIZE;
+    private static final int INITIAL_CAPACITY = 256;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int record_count;
+    /* "<table_key>_<instance_id>_<chain_id>" -> record index */
+    private final Map<String, Integer> records = new HashMap<>();
+
+    private CheckPointStore(String file) throws IOException {
+        channel = new RandomAccessFile(Utils.getUtils().cleanPath(file), "rw").getChannel();
+        FileLock lock = channel.lock();
+        try {
+            if (channel.size() == 0) {
+                map(INITIAL_CAPACITY);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(8, RECORD_SIZE);
+                buffer.putInt(12, 0);
+                buffer.force();
+                return;
+            }
+            map((int) ((channel.size() - HEADER_SIZE) / RECORD_SIZE));
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != RECORD_SIZE) {
+                throw new Error("Unrecognized checkpoint file : " + file);
+            }
+            refresh();
+        } finally {
+            lock.release();
+        }
+    }
+
+    public static synchronized CheckPointStore getInstance() {
+        if (instance == null) {
+            try {
+                instance = new CheckPointStore(Constants.CHECKPOINT_FILE);
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE, null, ex);
+                throw new Error("Unable to open the checkpoint file");
+            }
+        }
+        return instance;
+    }
+
+    /* Store of the published watermarks , kept apart from the verification checkpoints */
+    public static synchronized CheckPointStore getWatermarkInstance() {
+        if (watermark_instance == null) {
+            try {
+                watermark_instance = new CheckPointStore(Constants.WATERMARK_FILE);
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE, null, ex);
+                throw new Error("Unable to open the published watermark file");
+            }
+        }
+        return watermark_instance;
+    }
+
+    /* Key identifying a table in the store : first 8 bytes of SHA-256("<schema>_<table>_<db_guid>") */
+    public static long getTableKey(String schema, String table, String db_guid) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest((schema + "_" + table + "_" + db_guid).getBytes(StandardCharsets.UTF_8));
+            long key = 0;
+            for (int i = 0; i < 8; i++) {
+                key = (key << 8) | (digest[i] & 0xFF);
+            }
+            return key;
+        } catch (NoSuchAlgorithmException ex) {
+            throw new Error(ex);
+        }
+    }
+
+    /**
+     * Load the latest valid checkpoint of every chain of a table.
+     *
+     * @param table_key - Table key
+     * @param row_hashes - Filled with "<instance_id>_<chain_id>" -> stored hash
+     * of the last verified row , for chains where it is known
+     * @return - "<instance_id>_<chain_id>" -> {sequence_no , scn}
+     */
+    public synchronized Map<String, long[]> load(long table_key, Map<String, String> row_hashes) {
+        Map<String, long[]> checkpoints = new HashMap<>();
+        refresh();
+        for (int i = 0; i < record_count; i++) {
+            int offset = HEADER_SIZE + i * RECORD_SIZE;
+            if (buffer.getLong(offset) != table_key) {
+                continue;
+            }
+            int slot = getCurrentSlot(offset);
+            if (slot >= 0) {
+                String key = buffer.getInt(offset + 8) + "_" + buffer.getInt(offset + 12);
+                checkpoints.put(key, new long[]{buffer.getLong(slot + 8), buffer.getLong(slot + 16)});
+                String row_hash = getRowHash(slot);
+                if (row_hash != null) {
+                    row_hashes.put(key, row_hash);
+                }
+            }
+        }
+        return checkpoints;
+    }
+
+    /**
+     * Write the checkpoint of a chain into the older slot of its record. The
+     * write is durable once force() returns.
+     *
+     * @param table_key - Table key
+     * @param instance_id - Instance id
+     * @param chain_id - Chain id
+     * @param sequence_no - Last verified sequence number
+     * @param scn - SCN the sequence number was read as of , 0 if none
+     * @param row_hash - Stored hash of the last verified row , null if not known
+     */
+    public synchronized void update(long table_key, int instance_id, int chain_id, long sequence_no, long scn, String row_hash) {
+        String key = table_key + "_" + instance_id + "_" + chain_id;
+        Integer index = records.get(key);
+        if (index == null) {
+            index = append(key, table_key, instance_id, chain_id);
+        }
+        int offset = HEADER_SIZE + index * RECORD_SIZE;
+        int current = getCurrentSlot(offset);
+        long generation = current < 0 ? 1 : buffer.getLong(current) + 1;
+        int slot = current == offset + 16 ? offset + 16 + SLOT_SIZE : offset + 16;
+        buffer.putLong(slot, generation);
+        buffer.putLong(slot + 8, sequence_no);
+        buffer.putLong(slot + 16, scn);
+        putRowHash(slot, row_hash);
+        buffer.putInt(slot + SLOT_CRC, checksum(offset, slot));
+    }
+
+    /* Flush all updates to disk */
+    public synchronized void force() {
+        buffer.force();
+    }
+
+    /* Valid slot with the highest generation , -1 if no slot is valid */
+    private int getCurrentSlot(int offset) {
+        int best = -1;
+        for (int slot = offset + 16; slot < offset + RECORD_SIZE; slot += SLOT_SIZE) {
+            long generation = buffer.getLong(slot);
+            if (generation > 0 && buffer.getInt(slot + SLOT_CRC) == checksum(offset, slot)
+                    && (best < 0 || generation > buffer.getLong(best))) {
+                best = slot;
+            }
+        }
+        return best;
+    }
+
+    /* CRC32 over the record identity and the slot contents */
+    private int checksum(int offset, int slot) {
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < 16; i++) {
+            crc.update(buffer.get(offset + i));
+        }
+        for (int i = 0; i < SLOT_CRC; i++) {
+            crc.update(buffer.get(slot + i));
+        }
+        return (int) crc.getValue();
+    }
+
+    /* Pick up the records appended since the last look , by this or another process */
+    private void refresh() {
+        int count = buffer.getInt(12);
+        if (count > capacity) {
+            try {
+                map((int) ((channel.size() - HEADER_SIZE) / RECORD_SIZE));
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE, null, ex);
+                throw new Error("Unable to map the checkpoint file");
+            }
+        }
+        for (int i = record_count; i < count; i++) {
+            int offset = HEADER_SIZE + i * RECORD_SIZE;
+            records.put(buffer.getLong(offset) + "_" + buffer.getInt(offset + 8) + "_" + buffer.getInt(offset + 12), i);
+        }
+        record_count = count;
+    }
+
+    /**
+     * Append an empty record , growing the mapping if needed. The record is
+     * durable before it is counted. Returns the record another process
+     * appended for the same chain meanwhile , if any.
+     */
+    private int append(String key, long table_key, int instance_id, int chain_id) {
+        FileLock lock = null;
+        try {
+            lock = channel.lock();
+            refresh();
+            Integer index = records.get(key);
+            if (index != null) {
+                return index;
+            }
+            if (record_count == capacity) {
+                map(capacity * 2);
+            }
+            int offset = HEADER_SIZE + record_count * RECORD_SIZE;
+            buffer.putLong(offset, table_key);
+            buffer.putInt(offset + 8, instance_id);
+            buffer.putInt(offset + 12, chain_id);
+            for (int i = 16; i < RECORD_SIZE; i++) {
+                buffer.put(offset + i, (byte) 0);
+            }
+            buffer.force();
+            buffer.putInt(12, ++record_count);
+            buffer.force();
+            records.put(key, record_count - 1);
+            return record_count - 1;
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, null, ex);
+            throw new Error("Unable to lock the checkpoint file");
+        } finally {
+            if (lock != null) {
+                try {
+                    lock.release();
+                } catch (IOException ex) {
+                    logger.log(Level.SEVERE, null, ex);
+                }
+            }
+        }
+    }
+
+    /* Hex row hash of a slot , null when the slot holds none */
+    private String getRowHash(int slot) {
+        StringBuilder hex = new StringBuilder(2 * HASH_SIZE);
+        boolean known = false;
+        for (int i = 0; i < HASH_SIZE; i++) {
+            int b = buffer.get(slot + 24 + i) & 0xFF;
+            known |= b != 0;
+            hex.append(Character.toUpperCase(Character.forDigit(b >> 4, 16)));
+            hex.append(Character.toUpperCase(Character.forDigit(b & 0xF, 16)));
+        }
+        return known ? hex.toString() : null;
+    }
+
+    private void putRowHash(int slot, String row_hash) {
+        for (int i = 0; i < HASH_SIZE; i++) {
+            byte b = 0;
+            if (row_hash != null && row_hash.length() == 2 * HASH_SIZE) {
+                b = (byte) Integer.parseInt(row_hash.substring(2 * i, 2 * i + 2), 16);
+            }
+            buffer.put(slot + 24 + i, b);
+        }
+    }
+
+    private void map(int new_capacity) {
+        try {
+            capacity = Math.max(new_capacity, INITIAL_CAPACITY);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, null, ex);
+            throw new Error("Unable to map the checkpoint file");
+        }
+    }
+}
@@ -72,6 +72,14 @@ public class ColumnData {
         }
     }
 
+    /* Add a column read from the metadata cache , in INTERNAL_COLUMN_ID order */
+    static void addColumnData(String column_name, String column_type, Integer column_position) {
+        if (column_list == null) {
+            column_list = new ArrayList<>();
+        }
+        column_list.add(new ColumnData(column_name, column_type, column_position));
+    }
+
     public static List<ColumnData> getColumnData() {
         return column_list;
     }
@@ -0,0 +1,206 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+
+/**
+ * Submits chaincode transactions to OBP and , when obp_async_submit is set ,
+ * confirms that they committed. Asynchronous transactions are only accepted
+ * by the REST proxy , so the tracker periodically reads the status of every
+ * outstanding transaction , all at once. A transaction that was invalidated ,
+ * for instance by a read conflict with a concurrent transaction , or is not
+ * committed within obp_commit_timeout_ms is submitted again with a new
+ * transaction id , at most COMMIT_ATTEMPTS times.
+ *
+ * Every log transaction of a table reads and writes the same last100 and
+ * bucket keys , so transactions of one table committed in the same block
+ * invalidate each other with MVCC_READ_CONFLICT. Asynchronous transactions
+ * of a table are therefore submitted one at a time : the next one is only
+ * submitted once the previous one committed or failed. Transactions of
+ * different tables are still in flight together , and obp_batch_size decides
+ * how many logs each transaction carries.
+ */
+public class CommitTracker {
+
+    private static CommitTracker instance;
+    private static final Logger logger = Logger.getLogger(CommitTracker.class.getName());
+    private static final int COMMIT_ATTEMPTS = 5;
+    private static final String VALID = "VALID";
+    /* txid -> outstanding transaction */
+    private final ConcurrentHashMap<String, Pending> outstanding = new ConcurrentHashMap<>();
+    /* Transactions that have not committed or failed yet , including those waiting to be submitted again */
+    private final Set<CompletableFuture<Boolean>> unsettled = ConcurrentHashMap.newKeySet();
+    /* "<schema>.<table>" -> last asynchronous transaction submitted for the table */
+    private final Map<String, CompletableFuture<Boolean>> lanes = new HashMap<>();
+    private final boolean async_submit;
+    private final long check_millis;
+    private final long timeout_millis;
+    /* Resubmits transactions off the HTTP client threads , submitting blocks on OBP */
+    private final ExecutorService resubmitter = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "commit-resubmitter");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /* An accepted transaction waiting for its commit status */
+    private static class Pending {
+
+        private final JSONArray args;
+        private final CompletableFuture<Boolean> committed;
+        private final int attempt;
+        private final long submitted_at;
+
+        Pending(JSONArray args, CompletableFuture<Boolean> committed, int attempt) {
+            this.args = args;
+            this.committed = committed;
+            this.attempt = attempt;
+            this.submitted_at = System.currentTimeMillis();
+        }
+    }
+
+    public static synchronized CommitTracker getInstance() {
+        if (instance == null) {
+            instance = new CommitTracker();
+        }
+        return instance;
+    }
+
+    private CommitTracker() {
+        this.async_submit = OBPUtils.getInstance().isObp_async_submit();
+        this.check_millis = OBPUtils.getInstance().getObp_commit_check_ms();
+        this.timeout_millis = OBPUtils.getInstance().getObp_commit_timeout_ms();
+        if (async_submit) {
+            ScheduledExecutorService checker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "commit-tracker");
+                t.setDaemon(true);
+                return t;
+            });
+            checker.scheduleWithFixedDelay(this::check, check_millis, check_millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Submit a chaincode transaction.
+     *
+     * @param args - Chaincode function and its arguments
+     * @return - completes with true once the transaction committed , or was
+     * accepted when submitting synchronously , and with false if it failed
+     */
+    public CompletableFuture<Boolean> submit(JSONArray args) {
+        CompletableFuture<Boolean> committed = new CompletableFuture<>();
+        unsettled.add(committed);
+        committed.whenComplete((result, ex) -> unsettled.remove(committed));
+        if (!async_submit) {
+            submit(args, committed, 1);
+            return committed;
+        }
+        CompletableFuture<Boolean> previous;
+        synchronized (lanes) {
+            previous = lanes.put(args.getString(1) + "." + args.getString(2), committed);
+        }
+        if (previous == null || previous.isDone()) {
+            submit(args, committed, 1);
+        } else {
+            /* Wait for the transaction in flight for this table */
+            previous.whenCompleteAsync((result, ex) -> resubmit(args, committed, 1), resubmitter);
+        }
+        return committed;
+    }
+
+    /* Wait until every transaction submitted so far committed or failed , after all its attempts */
+    public void awaitCommitted() {
+        while (true) {
+            unsettled.removeIf(CompletableFuture::isDone);
+            if (unsettled.isEmpty()) {
+                return;
+            }
+            List<CompletableFuture<Boolean>> pending = new ArrayList<>(unsettled);
+            System.out.println("Waiting for " + pending.size() + " OBP transactions to commit");
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+        }
+    }
+
+    private void submit(JSONArray args, CompletableFuture<Boolean> committed, int attempt) {
+        String jsonBody = OBPUtils.getInstance().JSONBodyBuilder(args, Constants.OBP_POST);
+        JSONObject result = OBPConnection.getInstance().postData(jsonBody);
+        if (!async_submit) {
+            committed.complete(result != null);
+        } else if (result == null) {
+            retry(args, committed, attempt, "was not accepted");
+        } else {
+            outstanding.put(result.getString("txid"), new Pending(args, committed, attempt));
+        }
+    }
+
+    private void retry(JSONArray args, CompletableFuture<Boolean> committed, int attempt, String reason) {
+        if (attempt >= COMMIT_ATTEMPTS) {
+            System.err.println("OBP transaction " + args.get(0) + " " + reason + " after " + attempt + " attempts , giving up");
+            committed.complete(false);
+            return;
+        }
+        System.err.println("OBP transaction " + args.get(0) + " " + reason + " , submitting it again");
+        resubmitter.execute(() -> resubmit(args, committed, attempt + 1));
+    }
+
+    /* Submit a transaction on the resubmitter , failing it rather than leaving it unsettled */
+    private void resubmit(JSONArray args, CompletableFuture<Boolean> committed, int attempt) {
+        try {
+            submit(args, committed, attempt);
+        } catch (RuntimeException ex) {
+            logger.log(Level.SEVERE, null, ex);
+            committed.complete(false);
+        }
+    }
+
+    /* Read the status of every transaction outstanding for a check interval , resubmitting the failed ones */
+    private void check() {
+        try {
+            long now = System.currentTimeMillis();
+            List<CompletableFuture<Void>> reads = new ArrayList<>();
+            for (String txid : new ArrayList<>(outstanding.keySet())) {
+                Pending transaction = outstanding.get(txid);
+                if (transaction == null || now - transaction.submitted_at < check_millis) {
+                    continue;
+                }
+                reads.add(OBPConnection.getInstance().getTransactionStatusAsync(txid)
+                        .thenAccept(status -> confirm(txid, transaction, status, now)));
+            }
+            CompletableFuture.allOf(reads.toArray(new CompletableFuture<?>[0])).join();
+        } catch (RuntimeException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        }
+    }
+
+    private void confirm(String txid, Pending transaction, String status, long now) {
+        if (VALID.equals(status)) {
+            outstanding.remove(txid);
+            transaction.committed.complete(true);
+        } else if (status != null) {
+            outstanding.remove(txid);
+            retry(transaction.args, transaction.committed, transaction.attempt, "with txid " + txid + " was invalidated : " + status);
+        } else if (now - transaction.submitted_at >= timeout_millis) {
+            outstanding.remove(txid);
+            retry(transaction.args, transaction.committed, transaction.attempt, "with txid " + txid + " did not commit in time");
+        }
+    }
+}
@@ -32,10 +32,16 @@ public class Constants {
     public static final String DB_SIG_CERT = "ORABCTAB_SIGNATURE_CERT$";
     public static final String DB_BC_SPARE = "ORABCTAB_SPARE$";
     public static final String FILENAME = "BytesFile.dat";
+    public static final String CHECKPOINT_FILE = "checkpoints.dat";
+    public static final String WATERMARK_FILE = "published_watermarks.dat";
+    public static final String METADATA_CACHE_FILE = "metadata_cache.json";
     public static final Integer MODE_OFF = 0;
     public static final Integer MODE_LOCAL = 1;
     public static final Integer MODE_OBP = 2;
     public static final String OBP_TXNID = "transaction-id";
     public static final String OBP_POST = "transactions";
     public static final String OBP_GET = "chaincode-queries";
+    public static final String VERIFY_FULL = "FULL";
+    public static final String VERIFY_SAMPLE = "SAMPLE";
+    public static final String VERIFY_REAUDIT = "REAUDIT";
 }
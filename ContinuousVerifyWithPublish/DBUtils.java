@@ -11,7 +11,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.sql.Blob;
+import java.sql.Clob;
 import java.sql.Connection;
+import java.sql.NClob;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -28,6 +31,8 @@ public class DBUtils {
     private final HashMap<String, Integer> data_type_map = new HashMap<>();
     private static final Logger logger = Logger.getLogger(DBUtils.class.getName());
     private String db_guid;
+    /* SCN all queries of the current cycle read as of , null to read the latest data */
+    private Long snapshot_scn;
 
     private DBUtils() {
         populateDataTypeMap();
@@ -83,18 +88,24 @@ public class DBUtils {
      *
      */
     public void writeClob() {
+        try (final OutputStream byteStream = new FileOutputStream(IO.getIOInstance().getBytesFile(), true)) {
+            writeClob(IO.getIOInstance().getClob(), byteStream);
+        } catch (SQLException | IOException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        } 
+    }
+
+    /* Writes the AL16UTF16 bytes of a Clob to a stream */
+    public void writeClob(Clob clob, OutputStream byteStream) throws SQLException, IOException {
         char[] char_buff = new char[4 * 1024];
         byte[] byte_buff = new byte[8 * 1024];
         int cRead;
-        try (final OutputStream byteStream = new FileOutputStream(IO.getIOInstance().getBytesFile(), true);
-             final Reader clob_reader = IO.getIOInstance().getClob().getCharacterStream()) {
+        try (final Reader clob_reader = clob.getCharacterStream()) {
             while ((cRead = clob_reader.read(char_buff, 0, char_buff.length)) != -1) {
                 CharacterSet.javaCharsToAL16UTF16Bytes(char_buff, cRead, byte_buff);
                 byteStream.write(byte_buff, 0, cRead * 2);
             }
-        } catch (SQLException | IOException ex) {
-            logger.log(Level.SEVERE, null, ex);
-        } 
+        }
     }
     
     /**
@@ -105,18 +116,24 @@ public class DBUtils {
      *      is good to have a bigger buffer for NCLOBS.
      */
     public void writeNClob() {
+        try (final OutputStream byteStream = new FileOutputStream(IO.getIOInstance().getBytesFile(), true)) {
+            writeNClob(IO.getIOInstance().getNClob(), byteStream);
+        } catch (SQLException | IOException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        } 
+    }
+
+    /* Writes the AL16UTF16 bytes of a NClob to a stream */
+    public void writeNClob(NClob nclob, OutputStream byteStream) throws SQLException, IOException {
         char[] char_buff = new char[8 * 1024];
         byte[] byte_buff = new byte[16 * 1024];
         int cRead;
-        try (final OutputStream byteStream = new FileOutputStream(IO.getIOInstance().getBytesFile(), true);
-             final Reader clob_reader = IO.getIOInstance().getNClob().getCharacterStream()) {
+        try (final Reader clob_reader = nclob.getCharacterStream()) {
             while ((cRead = clob_reader.read(char_buff, 0, char_buff.length)) != -1) {
                 CharacterSet.javaCharsToAL16UTF16Bytes(char_buff, cRead, byte_buff);
                 byteStream.write(byte_buff, 0, cRead * 2);
             }
-        } catch (SQLException | IOException ex) {
-            logger.log(Level.SEVERE, null, ex);
-        } 
+        }
     }
 
     /**
@@ -125,17 +142,23 @@ public class DBUtils {
      *
      */
     public void writeBlob() {
+        try (final OutputStream byteStream = new FileOutputStream(IO.getIOInstance().getBytesFile(), true)) {
+            writeBlob(IO.getIOInstance().getBlob(), byteStream);
+        } catch (SQLException | IOException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /* Writes the bytes of a Blob to a stream */
+    public void writeBlob(Blob blob, OutputStream byteStream) throws SQLException, IOException {
         /*Create a 8KB Buffer */
         byte buf[] = new byte[8 * 1024];
         int nRead;
-        try (final OutputStream byteStream = new FileOutputStream(IO.getIOInstance().getBytesFile(), true);
-             final InputStream blob_stream = IO.getIOInstance().getBlob().getBinaryStream()){
+        try (final InputStream blob_stream = blob.getBinaryStream()) {
             /* Read till the end of Blob */
             while ((nRead = blob_stream.read(buf, 0, buf.length)) != -1) {
                 byteStream.write(buf, 0, nRead);
             }
-        } catch (SQLException | IOException ex) {
-            logger.log(Level.SEVERE, null, ex);
         }
     }
     
@@ -161,6 +184,41 @@ public class DBUtils {
         data_type_map.put(Constants.DB_UROWID, 208);
     }
     
+    /**
+     * Returns the table reference to use in queries on the blockchain table.
+     * When a snapshot SCN has been captured for this cycle the table is read
+     * AS OF that SCN , so every query of the cycle sees the same data.
+     *
+     * @param schema_name_int - Schema name
+     * @param table_name_int - Table name
+     * @return - Table reference
+     */
+    public String getTableRef(String schema_name_int, String table_name_int) {
+        if (snapshot_scn == null) {
+            return schema_name_int + "." + table_name_int;
+        }
+        return schema_name_int + "." + table_name_int + " AS OF SCN " + snapshot_scn;
+    }
+
+    /* Capture the current SCN as the snapshot for this cycle */
+    public Long captureSnapshotScn() {
+        Connection con = DBConnection.getInstance().getConnection();
+        snapshot_scn = null;
+        try ( Statement st = con.createStatement();  ResultSet rs = st.executeQuery("select current_scn from v$database")) {
+            if (rs.next()) {
+                snapshot_scn = rs.getLong(1);
+            }
+        } catch (SQLException ex) {
+            logger.log(Level.SEVERE, null, ex);
+            throw new Error("Unable to capture the current SCN");
+        }
+        return snapshot_scn;
+    }
+
+    public Long getSnapshotScn() {
+        return snapshot_scn;
+    }
+
     public String getDbGUID() {
         if (db_guid == null) {
             Connection con = DBConnection.getInstance().getConnection();
@@ -180,4 +238,11 @@ public class DBUtils {
         }
         return db_guid;
     }
+
+    /* Database GUID fetched together with other metadata */
+    void setDbGUID(String db_guid) {
+        if (db_guid != null) {
+            this.db_guid = db_guid;
+        }
+    }
 }
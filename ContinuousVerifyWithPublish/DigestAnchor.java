@@ -0,0 +1,176 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.json.JSONArray;
+
+
+/**
+ * Anchors a signed digest of a table on OBP once per successful verification
+ * cycle instead of publishing every row. At the end of a cycle in which no row
+ * of the table failed , the digest is taken with
+ * DBMS_BLOCKCHAIN_TABLE.GET_SIGNED_BLOCKCHAIN_DIGEST and published with the
+ * chain tips verified in the cycle , one storeDigest transaction per table.
+ * DigestCompare later checks successive anchored digests against each other
+ * and against the table.
+ *
+ * The digest is taken after the rows are verified , so it may also cover rows
+ * inserted meanwhile. Those rows are covered when DigestCompare verifies the
+ * table between this digest and the next one.
+ */
+public class DigestAnchor {
+
+    private static DigestAnchor instance;
+    private static final Logger logger = Logger.getLogger(DigestAnchor.class.getName());
+    private static final String DIGEST_QRY = "declare "
+            + "signed_rows SYS.ORABCTAB_ROW_ARRAY_T; "
+            + "signed_bytes BLOB; "
+            + "begin "
+            + "? := DBMS_BLOCKCHAIN_TABLE.GET_SIGNED_BLOCKCHAIN_DIGEST(?, ?, signed_bytes, signed_rows, ?); "
+            + "? := signed_bytes; "
+            + "? := signed_rows.count; "
+            + "end;";
+    /* "<schema>.<table>" -> "<instance_id>_<chain_id>" -> tip verified since the last digest */
+    private final Map<String, Map<String, LogBuilder>> tips = new HashMap<>();
+    /* "<schema>.<table>" of the tables with a failed row in this cycle */
+    private final Set<String> failed = new HashSet<>();
+
+    public static synchronized DigestAnchor getInstance() {
+        if (instance == null) {
+            instance = new DigestAnchor();
+        }
+        return instance;
+    }
+
+    private DigestAnchor() {
+    }
+
+    /* Record the log of a verified row , a failed row keeps the digest of its table from this cycle */
+    public synchronized void add(LogBuilder log) {
+        String table = log.getSchema_name() + "." + log.getTable_name();
+        if (!log.isResult()) {
+            failed.add(table);
+            return;
+        }
+        tips.computeIfAbsent(table, k -> new HashMap<>())
+                .merge(log.getInstance_id() + "_" + log.getChain_id(), log, (tip, next) -> next.getSeq_no() > tip.getSeq_no() ? next : tip);
+    }
+
+    /**
+     * Anchor the signed digest of a table at the end of a verification cycle.
+     *
+     * @param schema_name - Schema name
+     * @param table_name - Table name
+     */
+    public void anchor(String schema_name, String table_name) {
+        String table = schema_name + "." + table_name;
+        Map<String, LogBuilder> table_tips;
+        synchronized (this) {
+            table_tips = tips.remove(table);
+            if (failed.remove(table)) {
+                System.err.println("Verification cycle of " + table + " failed , its digest is not anchored");
+                restore(table_tips);
+                return;
+            }
+        }
+        if (table_tips == null || table_tips.isEmpty()) {
+            return;
+        }
+        String[] digest = signedDigest(schema_name, table_name);
+        if (digest == null) {
+            restore(table_tips);
+            return;
+        }
+        JSONArray anchors = new JSONArray();
+        for (LogBuilder tip : table_tips.values()) {
+            JSONArray entry = new JSONArray();
+            entry.put(tip.getInstance_id().toString());
+            entry.put(tip.getChain_id().toString());
+            entry.put(tip.getSeq_no().toString());
+            entry.put(tip.getHash());
+            anchors.put(entry);
+        }
+        JSONArray args = new JSONArray();
+        args.put("storeDigest");
+        args.put(schema_name);
+        args.put(table_name);
+        args.put(DBUtils.getDBUtils().getDbGUID());
+        args.put(digest[0]);
+        args.put(digest[1]);
+        args.put(anchors.toString());
+        args.put(String.valueOf(System.currentTimeMillis()));
+        CommitTracker.getInstance().submit(args).thenAccept(anchored -> {
+            if (anchored) {
+                System.out.println("Anchored the signed digest of " + table + " covering " + digest[2] + " rows , with the tips of "
+                        + table_tips.size() + " chains");
+                return;
+            }
+            System.err.println("Failed to anchor the signed digest of " + table);
+            /* Anchor these tips with the next digest */
+            restore(table_tips);
+        });
+    }
+
+    /* Keep tips that were not anchored for the next digest , unless newer tips replaced them meanwhile */
+    private synchronized void restore(Map<String, LogBuilder> table_tips) {
+        if (table_tips == null) {
+            return;
+        }
+        for (LogBuilder tip : table_tips.values()) {
+            add(tip);
+        }
+    }
+
+    /**
+     * Take the signed digest of a table.
+     *
+     * @param schema_name_int - Schema name
+     * @param table_name_int - Table name
+     * @return - hex signed bytes , hex signature and the number of signed rows ,
+     * null if the database could not sign a digest
+     */
+    public static String[] signedDigest(String schema_name_int, String table_name_int) {
+        Connection con = DBConnection.getInstance().getConnection();
+        String certificate_id = OBPUtils.getInstance().getObp_digest_certificate_id();
+        try ( CallableStatement digest_stmt = con.prepareCall(DIGEST_QRY)) {
+            digest_stmt.registerOutParameter(1, Types.VARBINARY);
+            /* bind schema */
+            digest_stmt.setString(2, Utils.getUtils().unEnquoted(schema_name_int));
+            /* bind table */
+            digest_stmt.setString(3, Utils.getUtils().unEnquoted(table_name_int));
+            /* bind certificate id , the schema certificate is used when not set */
+            if (certificate_id.isEmpty()) {
+                digest_stmt.setNull(4, Types.VARBINARY);
+            } else {
+                digest_stmt.setBytes(4, Utils.getUtils().hexToBytes(certificate_id));
+            }
+            digest_stmt.registerOutParameter(5, Types.BLOB);
+            digest_stmt.registerOutParameter(6, Types.INTEGER);
+            digest_stmt.execute();
+            Blob signed_bytes = digest_stmt.getBlob(5);
+            return new String[]{
+                Utils.getUtils().bytesToHex(signed_bytes.getBytes(1, (int) signed_bytes.length())),
+                Utils.getUtils().bytesToHex(digest_stmt.getBytes(1)),
+                String.valueOf(digest_stmt.getInt(6))};
+        } catch (SQLException ex) {
+            logger.log(Level.SEVERE, null, ex);
+            System.err.println("Unable to get the signed digest of " + schema_name_int + "." + table_name_int + " : " + ex.getMessage());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,160 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+
+/**
+ * Compares the successive signed digests of a table anchored on OBP by
+ * DigestAnchor. Anchoring times must increase , the anchored tip of a chain
+ * must never move back or change its hash , and the database must verify the
+ * rows of the table between every two successive digests with
+ * DBMS_BLOCKCHAIN_TABLE.VERIFY_TABLE_BLOCKCHAIN.
+ */
+public class DigestCompare {
+
+    private static final Logger logger = Logger.getLogger(DigestCompare.class.getName());
+    private static final String VERIFY_QRY = "begin DBMS_BLOCKCHAIN_TABLE.VERIFY_TABLE_BLOCKCHAIN(?, ?, ?); end;";
+
+    /**
+     * Compare the anchored digests of a table from a digest onwards.
+     *
+     * @param schema_name_int - Schema name
+     * @param table_name_int - Table name
+     * @param from - Index of the first digest , from 1
+     * @return - if every pair of successive digests matches
+     */
+    public static boolean compare(String schema_name_int, String table_name_int, int from) {
+        /* "<instance_id>_<chain_id>" -> latest anchored tip */
+        Map<String, JSONObject> tips = new HashMap<>();
+        JSONObject earlier = null;
+        int compared = 0;
+        int next = from;
+        while (true) {
+            JSONObject page = readDigests(schema_name_int, table_name_int, next);
+            if (page == null) {
+                return false;
+            }
+            JSONArray digests = page.getJSONArray("digests");
+            for (int i = 0; i < digests.length(); i++) {
+                JSONObject digest = digests.getJSONObject(i);
+                if (!compareTips(tips, digest)) {
+                    return false;
+                }
+                if (earlier != null) {
+                    if (!compare(schema_name_int, table_name_int, earlier, digest)) {
+                        return false;
+                    }
+                    compared++;
+                }
+                earlier = digest;
+            }
+            next += digests.length();
+            if (digests.length() == 0 || next > page.getInt("count")) {
+                break;
+            }
+        }
+        if (earlier == null) {
+            System.err.println("No digest of " + schema_name_int + "." + table_name_int + " is anchored from index " + from);
+            return false;
+        }
+        System.out.println("Compared " + compared + " pairs of successive digests of " + schema_name_int + "." + table_name_int + " , "
+                + tips.size() + " chains anchored");
+        return true;
+    }
+
+    /* Check that the tips of a digest move every chain forward */
+    private static boolean compareTips(Map<String, JSONObject> tips, JSONObject digest) {
+        JSONArray anchors = digest.getJSONArray("tips");
+        for (int i = 0; i < anchors.length(); i++) {
+            JSONObject anchor = anchors.getJSONObject(i);
+            String chain = anchor.getInt("instance_id") + "_" + anchor.getInt("chain_id");
+            long seq_no = anchor.getLong("sequence_no");
+            JSONObject tip = tips.get(chain);
+            if (tip != null && (tip.getLong("sequence_no") > seq_no
+                    || (tip.getLong("sequence_no") == seq_no && !tip.getString("hash").equalsIgnoreCase(anchor.getString("hash"))))) {
+                System.err.println("Digest " + digest.getInt("index") + " moves back the tip of instance id : " + anchor.getInt("instance_id")
+                        + " , chain id : " + anchor.getInt("chain_id") + " from sequence no : " + tip.getLong("sequence_no") + " to sequence no : " + seq_no);
+                return false;
+            }
+            tips.put(chain, anchor);
+        }
+        return true;
+    }
+
+    /* Verify the rows of the table between two successive digests */
+    private static boolean compare(String schema_name_int, String table_name_int, JSONObject earlier, JSONObject later) {
+        String pair = "digests " + earlier.getInt("index") + " and " + later.getInt("index");
+        if (later.getLong("time") <= earlier.getLong("time")) {
+            System.err.println("Anchoring times do not increase between " + pair);
+            return false;
+        }
+        Connection con = DBConnection.getInstance().getConnection();
+        try ( CallableStatement verify_stmt = con.prepareCall(VERIFY_QRY)) {
+            Blob latest = con.createBlob();
+            latest.setBytes(1, Utils.getUtils().hexToBytes(later.getString("signed_bytes")));
+            Blob previous = con.createBlob();
+            previous.setBytes(1, Utils.getUtils().hexToBytes(earlier.getString("signed_bytes")));
+            /* bind the later digest */
+            verify_stmt.setBlob(1, latest);
+            /* bind the earlier digest */
+            verify_stmt.setBlob(2, previous);
+            verify_stmt.registerOutParameter(3, Types.BIGINT);
+            verify_stmt.execute();
+            System.out.println("Verified " + verify_stmt.getLong(3) + " rows of " + schema_name_int + "." + table_name_int + " between " + pair);
+            return true;
+        } catch (SQLException ex) {
+            logger.log(Level.SEVERE, null, ex);
+            System.err.println("Verification of " + schema_name_int + "." + table_name_int + " between " + pair + " failed : " + ex.getMessage());
+        }
+        return false;
+    }
+
+    private static JSONObject readDigests(String schema_name_int, String table_name_int, int from) {
+        JSONArray args = new JSONArray();
+        args.put("readDigests");
+        args.put(schema_name_int);
+        args.put(table_name_int);
+        args.put(DBUtils.getDBUtils().getDbGUID());
+        args.put(String.valueOf(from));
+        JSONObject page = OBPConnection.getInstance().fetchData(OBPUtils.getInstance().JSONBodyBuilder(args, Constants.OBP_GET));
+        if (page == null || !page.has("digests")) {
+            System.err.println("Unable to read the anchored digests of " + schema_name_int + "." + table_name_int);
+            return null;
+        }
+        return page;
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 2 && args.length != 3) {
+            System.err.println("Invalid Number Of Arguments Supplied.");
+            System.err.println("Java program should be run using :");
+            System.err.println("java DigestCompare <SCHEMA> <TABLE> [FROM_INDEX]");
+            throw new Error("Invalid Number Of Arguments Supplied.");
+        }
+        try {
+            final int FROM_INDEX = args.length == 3 ? Integer.parseInt(args[2]) : 1;
+            String schema_name_int = Utils.getUtils().cleanString(args[0], false);
+            String table_name_int = Utils.getUtils().cleanString(args[1], false);
+            compare(schema_name_int, table_name_int, FROM_INDEX);
+            DBConnection.getInstance().closeConnection();
+        } catch (NumberFormatException ex) {
+            System.err.println("FROM_INDEX MUST BE AN INTEGER");
+        }
+    }
+}
@@ -70,6 +70,13 @@ public class HashColumn {
         }
     }
 
+    /* Stores the hash column data type and position read from the metadata cache */
+    static void setHashColumn(String column_type, Integer column_position) {
+        if (instance == null) {
+            instance = new HashColumn(column_type, column_position);
+        }
+    }
+
     public static HashColumn getHashColumnInstance() {
         return instance;
     }
@@ -127,7 +134,7 @@ public class HashColumn {
         Connection con = DBConnection.getInstance().getConnection();
         String current_row_hash = null;
         /* SQL query to fetch the current row hash */
-        String current_hash_qry = "SELECT ORABCTAB_HASH$ from " + schema_name_int + "." + table_name_int + " "
+        String current_hash_qry = "SELECT ORABCTAB_HASH$ from " + DBUtils.getDBUtils().getTableRef(schema_name_int, table_name_int) + " "
                 + "where ORABCTAB_INST_ID$ = ? and " + "ORABCTAB_CHAIN_ID$ = ? and " + "ORABCTAB_SEQ_NUM$ = ?";
         try {
             /* bind instance_id */
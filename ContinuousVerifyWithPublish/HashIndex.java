@@ -0,0 +1,152 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Verified ORABCTAB_HASH$ values , one memory mapped file per chain. Sequence
+ * numbers of a chain are contiguous , so the file is a dense array of 64-byte
+ * slots where sequence number n lives at slot n - 1. An all zero slot holds no
+ * hash. Slots are mapped in chunks as they are used , so the index takes no
+ * Java heap and sparse files keep unused chunks from taking disk space.
+ *
+ * File : "<schema>_<table>_<guid>_<instance_id>_<chain_id>.hix"
+ */
+public class HashIndex {
+
+    private static HashIndex instance;
+    private static final Logger logger = Logger.getLogger(HashIndex.class.getName());
+    private static final int SLOT_SIZE = 64;
+    /* Slots per mapped chunk (64MB) */
+    private static final int CHUNK_SLOTS = 1 << 20;
+    private String prefix;
+    /* "<instance_id>_<chain_id>" -> file of the chain */
+    private final Map<String, FileChannel> channels = new HashMap<>();
+    /* "<instance_id>_<chain_id>" -> mapped chunks , null where not mapped yet */
+    private final Map<String, List<MappedByteBuffer>> chunks = new HashMap<>();
+
+    public static HashIndex getInstance() {
+        if (instance == null) {
+            instance = new HashIndex();
+        }
+        return instance;
+    }
+
+    /* Locate the hash index files of this table */
+    public void initHashIndex(String schema, String table) {
+        if (prefix == null) {
+            prefix = Utils.getUtils().cleanPath(schema + "_" + table + "_" + DBUtils.getDBUtils().getDbGUID() + "_");
+        }
+    }
+
+    /**
+     * Record the stored hash of a verified row.
+     *
+     * @param instance_id - Instance id
+     * @param chain_id - Chain id
+     * @param seq_no - Sequence number
+     * @param hash - Verified ORABCTAB_HASH$ in hex
+     */
+    public synchronized void put(int instance_id, int chain_id, long seq_no, String hash) {
+        MappedByteBuffer chunk = getChunk(instance_id, chain_id, seq_no, true);
+        byte[] bytes = Utils.getUtils().hexToBytes(hash);
+        if (chunk == null || bytes.length != SLOT_SIZE) {
+            return;
+        }
+        int offset = (int) ((seq_no - 1) % CHUNK_SLOTS) * SLOT_SIZE;
+        for (int i = 0; i < SLOT_SIZE; i++) {
+            chunk.put(offset + i, bytes[i]);
+        }
+    }
+
+    /**
+     * Verified hash of a row.
+     *
+     * @param instance_id - Instance id
+     * @param chain_id - Chain id
+     * @param seq_no - Sequence number
+     * @return - Verified ORABCTAB_HASH$ in hex , null if the row was never verified
+     */
+    public synchronized String get(int instance_id, int chain_id, long seq_no) {
+        MappedByteBuffer chunk = getChunk(instance_id, chain_id, seq_no, false);
+        if (chunk == null) {
+            return null;
+        }
+        int offset = (int) ((seq_no - 1) % CHUNK_SLOTS) * SLOT_SIZE;
+        byte[] bytes = new byte[SLOT_SIZE];
+        boolean known = false;
+        for (int i = 0; i < SLOT_SIZE; i++) {
+            bytes[i] = chunk.get(offset + i);
+            known |= bytes[i] != 0;
+        }
+        return known ? Utils.getUtils().bytesToHex(bytes) : null;
+    }
+
+    /* Flush all recorded hashes to disk */
+    public synchronized void force() {
+        for (List<MappedByteBuffer> chain_chunks : chunks.values()) {
+            for (MappedByteBuffer chunk : chain_chunks) {
+                if (chunk != null) {
+                    chunk.force();
+                }
+            }
+        }
+    }
+
+    /*
+     * Chunk holding the slot of a sequence number , mapping it if needed.
+     * Mapping a chunk read-write extends the file to its end , so the file
+     * grows by whole chunks. Without create , a chunk that does not lie
+     * entirely within the file is not mapped , so lookups never grow it.
+     */
+    private MappedByteBuffer getChunk(int instance_id, int chain_id, long seq_no, boolean create) {
+        if (prefix == null || seq_no < 1) {
+            return null;
+        }
+        String key = instance_id + "_" + chain_id;
+        int index = (int) ((seq_no - 1) / CHUNK_SLOTS);
+        List<MappedByteBuffer> chain_chunks = chunks.computeIfAbsent(key, k -> new ArrayList<>());
+        if (index < chain_chunks.size() && chain_chunks.get(index) != null) {
+            return chain_chunks.get(index);
+        }
+        try {
+            FileChannel channel = channels.get(key);
+            long position = (long) index * CHUNK_SLOTS * SLOT_SIZE;
+            if (channel == null) {
+                if (!create && !new File(prefix + key + ".hix").exists()) {
+                    return null;
+                }
+                channel = new RandomAccessFile(prefix + key + ".hix", "rw").getChannel();
+                channels.put(key, channel);
+            }
+            if (!create && position + (long) CHUNK_SLOTS * SLOT_SIZE > channel.size()) {
+                return null;
+            }
+            MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_WRITE, position, (long) CHUNK_SLOTS * SLOT_SIZE);
+            while (chain_chunks.size() <= index) {
+                chain_chunks.add(null);
+            }
+            chain_chunks.set(index, chunk);
+            return chunk;
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, null, ex);
+            throw new Error("Unable to map the hash index of instance id : " + instance_id + " , chain id : " + chain_id);
+        }
+    }
+}
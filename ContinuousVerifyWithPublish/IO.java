@@ -18,6 +18,8 @@ public class IO {
     private Clob clob;
     private NClob nClob;
     private Blob blob;
+    /* LOB bytes of the row bytes being written */
+    private long lob_bytes;
     private static IO instance;
 
     public static IO getIOInstance() {
@@ -64,4 +66,12 @@ public class IO {
     public void setBlob(Blob blob) {
         this.blob = blob;
     }
+
+    public long getLobBytes() {
+        return lob_bytes;
+    }
+
+    public void setLobBytes(long lob_bytes) {
+        this.lob_bytes = lob_bytes;
+    }
 }
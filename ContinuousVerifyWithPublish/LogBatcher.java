@@ -0,0 +1,159 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+
+
+/**
+ * Collects the logs of verified rows per table and publishes them to OBP with
+ * the storeLogBatch chaincode function , one transaction per batch. A batch is
+ * published once it holds obp_batch_size logs , once its oldest log has waited
+ * obp_batch_millis , and at the end of every verification cycle.
+ */
+public class LogBatcher {
+
+    private static LogBatcher instance;
+    /* "<schema>.<table>" -> pending logs */
+    private final Map<String, List<LogBuilder>> batches = new HashMap<>();
+    /* "<schema>.<table>" -> time the oldest pending log was added */
+    private final Map<String, Long> started = new HashMap<>();
+    /* Held while taking and publishing batches , so batches of a table are published in order */
+    private final Object publish_lock = new Object();
+    private final int batch_size;
+    private final long batch_millis;
+
+    public static synchronized LogBatcher getInstance() {
+        if (instance == null) {
+            instance = new LogBatcher();
+        }
+        return instance;
+    }
+
+    private LogBatcher() {
+        this.batch_size = OBPUtils.getInstance().getObp_batch_size();
+        this.batch_millis = OBPUtils.getInstance().getObp_batch_millis();
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "log-batcher");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, batch_millis / 4);
+        timer.scheduleWithFixedDelay(this::publishExpired, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /* Add the log of a verified row , publishing its batch when full */
+    public void add(LogBuilder log) {
+        String key = log.getSchema_name() + "." + log.getTable_name();
+        boolean full;
+        synchronized (this) {
+            List<LogBuilder> batch = batches.computeIfAbsent(key, k -> new ArrayList<>());
+            if (batch.isEmpty()) {
+                started.put(key, System.currentTimeMillis());
+            }
+            batch.add(log);
+            full = batch.size() >= batch_size;
+        }
+        if (full) {
+            synchronized (publish_lock) {
+                List<LogBuilder> batch;
+                synchronized (this) {
+                    batch = take(key);
+                }
+                publish(batch);
+            }
+        }
+    }
+
+    /* Publish every pending batch */
+    public void flush() {
+        synchronized (publish_lock) {
+            List<List<LogBuilder>> pending = new ArrayList<>();
+            synchronized (this) {
+                for (String key : new ArrayList<>(batches.keySet())) {
+                    pending.add(take(key));
+                }
+            }
+            for (List<LogBuilder> batch : pending) {
+                publish(batch);
+            }
+        }
+    }
+
+    /* Publish the batches whose oldest log has waited long enough */
+    private void publishExpired() {
+        synchronized (publish_lock) {
+            List<List<LogBuilder>> expired = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            synchronized (this) {
+                for (String key : new ArrayList<>(batches.keySet())) {
+                    if (now - started.get(key) >= batch_millis) {
+                        expired.add(take(key));
+                    }
+                }
+            }
+            for (List<LogBuilder> batch : expired) {
+                publish(batch);
+            }
+        }
+    }
+
+    private List<LogBuilder> take(String key) {
+        started.remove(key);
+        return batches.remove(key);
+    }
+
+    private void publish(List<LogBuilder> batch) {
+        if (batch != null && !batch.isEmpty()) {
+            publishBatch(batch);
+        }
+    }
+
+    /**
+     * Publish a batch of logs of one table in a single transaction.
+     *
+     * @param batch - Logs of one table
+     * @return - completes with true once the transaction committed , or was
+     * accepted when submitting synchronously
+     */
+    static CompletableFuture<Boolean> publishBatch(List<LogBuilder> batch) {
+        LogBuilder first = batch.get(0);
+        JSONArray logs = new JSONArray();
+        for (LogBuilder log : batch) {
+            JSONArray entry = new JSONArray();
+            entry.put(log.getInstance_id().toString());
+            entry.put(log.getChain_id().toString());
+            entry.put(log.getSeq_no().toString());
+            entry.put(String.valueOf(log.isResult()));
+            entry.put(log.getHash());
+            if (!log.isResult()) {
+                entry.put(log.getExpected_hash());
+            }
+            logs.put(entry);
+        }
+        JSONArray args = new JSONArray();
+        args.put("storeLogBatch");
+        args.put(first.getSchema_name());
+        args.put(first.getTable_name());
+        args.put(DBUtils.getDBUtils().getDbGUID());
+        args.put(logs.toString());
+        return CommitTracker.getInstance().submit(args).thenApply(published -> {
+            for (LogBuilder log : batch) {
+                PublishWatermark.getInstance().published(log, published);
+            }
+            return published;
+        });
+    }
+}
@@ -6,11 +6,6 @@
  *
  */
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.json.JSONArray;
 
@@ -93,43 +88,50 @@ public class LogBuilder {
         }
     }
 
-    /* Publish the Log Object to a file */
+    /* Queue the Log Object on the log writer of this table as a binary LogRecord */
     private void publishLocal() {
-        String db_guid = DBUtils.getDBUtils().getDbGUID();
-        String key = getSchema_name() + "_" + getTable_name() + "_" + db_guid + ".log";
-        File logFile = new File(Utils.getUtils().cleanPath(key));
-        FileOutputStream outputStream = null;
-        try {
-            outputStream = new FileOutputStream(logFile, true);
-            String text;
-            /* Check if verification failed or succeeded*/
+        byte[] record = LogRecord.encode(getInstance_id(), getChain_id(), getSeq_no(), isResult(), getHash(), getExpected_hash());
+        LogWriter.getInstance(getSchema_name(), getTable_name()).append(record);
+    }
+
+    /* Publish log to OBP , through the outbox or in a batch of logs unless batching is disabled */
+    private void publishOBP() {
+        /* Keep the row log locally and anchor only the chain tip , failures are still published row by row */
+        if (OBPUtils.getInstance().isObp_anchor_tips()) {
+            publishLocal();
             if (isResult()) {
-                text = "Hash Verification successful for instance id : " + getInstance_id() + " , chain id : " + getChain_id()
-                        + " , sequence no : " + getSeq_no() + ". Verified Hash: " + getHash() + "\n";
-            } else {
-                text = "Hash Verification Failed for instance id : " + getInstance_id() + " , chain id : " + getChain_id()
-                        + " , sequence no : " + getSeq_no() + ". Expected Hash : " + getExpected_hash() + ". GOT : " + getHash() + "\n";
+                TipAnchor.getInstance().add(this);
+                return;
             }
-            byte[] strToBytes = text.getBytes();
-            outputStream.write(strToBytes);
-        } catch (FileNotFoundException ex) {
-            throw new Error("File not found!");
-        } catch (IOException ex) {
-            throw new Error("Unable to write");
-        } finally {
-            if (outputStream != null) {
-                try {
-                    outputStream.close();
-                } catch (IOException ex) {
-                    logger.log(Level.SEVERE, null, ex);
-                }
+        }
+        /* Keep the row log locally and anchor the Merkle root of its batch , failures are still published row by row */
+        if (OBPUtils.getInstance().isObp_merkle_batches()) {
+            publishLocal();
+            if (isResult()) {
+                MerkleBatch.getInstance().add(this);
+                return;
             }
         }
-    }
-
-    /* Publish log to OBP */
-    private void publishOBP() {
-        System.out.println("here");
+        /* Keep the row log locally and anchor the signed digest of the table once the cycle succeeds , failures are still published row by row */
+        if (OBPUtils.getInstance().isObp_signed_digest()) {
+            publishLocal();
+            DigestAnchor.getInstance().add(this);
+            if (isResult()) {
+                return;
+            }
+        }
+        /* Skip rows published before a restart , failures are always published */
+        if (!PublishWatermark.getInstance().claim(this)) {
+            return;
+        }
+        if (OBPUtils.getInstance().isPublish_outbox()) {
+            PublishOutbox.getInstance(getSchema_name(), getTable_name()).enqueue(this);
+            return;
+        }
+        if (OBPUtils.getInstance().getObp_batch_size() > 1) {
+            LogBatcher.getInstance().add(this);
+            return;
+        }
         JSONArray args = new JSONArray();
         args.put("storeLog");
         args.put(getSchema_name());
@@ -143,7 +145,6 @@ public class LogBuilder {
         if (!isResult()) {
             args.put(getExpected_hash());
         }
-        String jsonBody = OBPUtils.getInstance().JSONBodyBuilder(args, Constants.OBP_POST);
-        OBPConnection.getInstance().postData(jsonBody);
+        CommitTracker.getInstance().submit(args).thenAccept(published -> PublishWatermark.getInstance().published(this, published));
     }
 }
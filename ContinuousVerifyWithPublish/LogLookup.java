@@ -0,0 +1,302 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+
+/**
+ * Point and range lookups on a binary local verification log. The log is
+ * memory mapped , and the run index written by LogWriter leads to the runs of
+ * a chain holding a sequence number , which are binary searched. Records
+ * after the last indexed run , for example after a crash , are indexed when
+ * the log is opened. lookupAll() also searches the rotated segments listed in
+ * the LogManifest , decompressing only segments whose index covers the rows.
+ */
+public class LogLookup {
+
+    private static final Logger logger = Logger.getLogger(LogLookup.class.getName());
+    /* Records per mapped chunk , a single mapping is limited to 2GB */
+    private static final int CHUNK_RECORDS = (Integer.MAX_VALUE - LogRecord.HEADER_SIZE) / LogRecord.RECORD_SIZE;
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+    private final long record_count;
+    /* "<instance_id>_<chain_id>" -> runs {first_seq , last_seq , first_record , record_count} ordered by first_seq */
+    private final Map<String, List<long[]>> runs = new HashMap<>();
+    /* "<instance_id>_<chain_id>" -> highest last_seq of the runs up to each position */
+    private final Map<String, long[]> max_last_seq = new HashMap<>();
+
+    private LogLookup(String path, File index) throws IOException {
+        try ( RandomAccessFile file = new RandomAccessFile(path, "r");  FileChannel channel = file.getChannel()) {
+            if (channel.size() < LogRecord.HEADER_SIZE) {
+                throw new Error("Not a verification log : " + path);
+            }
+            record_count = (channel.size() - LogRecord.HEADER_SIZE) / LogRecord.RECORD_SIZE;
+            for (long first = 0; first < record_count; first += CHUNK_RECORDS) {
+                long records = Math.min(CHUNK_RECORDS, record_count - first);
+                chunks.add(channel.map(FileChannel.MapMode.READ_ONLY, LogRecord.HEADER_SIZE + first * LogRecord.RECORD_SIZE,
+                        records * LogRecord.RECORD_SIZE));
+            }
+            if (!LogRecord.isHeader(channel.map(FileChannel.MapMode.READ_ONLY, 0, LogRecord.HEADER_SIZE))) {
+                throw new Error("Not a verification log : " + path);
+            }
+        }
+        long indexed = loadIndex(index);
+        indexTail(indexed);
+        for (Map.Entry<String, List<long[]>> chain : runs.entrySet()) {
+            chain.getValue().sort(Comparator.comparingLong(run -> run[0]));
+            long[] max_last = new long[chain.getValue().size()];
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < max_last.length; i++) {
+                max = Math.max(max, chain.getValue().get(i)[1]);
+                max_last[i] = max;
+            }
+            max_last_seq.put(chain.getKey(), max_last);
+        }
+    }
+
+    /**
+     * Open a verification log for lookups.
+     *
+     * @param path - Path of the log file
+     * @return - Lookup over this log
+     */
+    public static LogLookup open(String path) {
+        try {
+            String log = Utils.getUtils().cleanPath(path);
+            return new LogLookup(log, new File(log.substring(0, log.lastIndexOf('.')) + ".idx"));
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, null, ex);
+            throw new Error("Unable to open the log : " + path);
+        }
+    }
+
+    /**
+     * All records of the rows in a range of sequence numbers , in the live log
+     * and in its rotated segments.
+     *
+     * @param path - Path of the live log file
+     * @param instance_id - Instance id
+     * @param chain_id - Chain id
+     * @param first_seq - First sequence number
+     * @param last_seq - Last sequence number (inclusive)
+     * @return - Records ordered by sequence number , then oldest first
+     */
+    public static List<LogRecord> lookupAll(String path, int instance_id, int chain_id, long first_seq, long last_seq) {
+        String log = Utils.getUtils().cleanPath(path);
+        List<LogRecord> records = new ArrayList<>();
+        for (String[] segment : new LogManifest(log).getSegments()) {
+            File segment_file = new File(segment[0]);
+            File index = new File(segment[1]);
+            /* A crash during rotation can leave a listed segment that was never renamed */
+            if (!segment_file.exists() || (index.exists() && !indexCovers(index, instance_id, chain_id, first_seq, last_seq))) {
+                continue;
+            }
+            File tmp = null;
+            try {
+                if (segment[0].endsWith(".gz")) {
+                    tmp = File.createTempFile("segment", ".vlog");
+                    try ( InputStream in = new GZIPInputStream(new FileInputStream(segment_file), 64 * 1024)) {
+                        Files.copy(in, tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    segment_file = tmp;
+                }
+                records.addAll(new LogLookup(segment_file.getPath(), index).lookup(instance_id, chain_id, first_seq, last_seq));
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE, null, ex);
+            } finally {
+                if (tmp != null) {
+                    tmp.delete();
+                }
+            }
+        }
+        if (new File(log).exists()) {
+            records.addAll(open(log).lookup(instance_id, chain_id, first_seq, last_seq));
+        }
+        records.sort(Comparator.comparingLong(LogRecord::getSeq_no).thenComparingLong(LogRecord::getTimestamp));
+        return records;
+    }
+
+    /* Does a run index have a run of the chain overlapping the range ? */
+    private static boolean indexCovers(File index, int instance_id, int chain_id, long first_seq, long last_seq) {
+        ByteBuffer entries;
+        try {
+            entries = ByteBuffer.wrap(Files.readAllBytes(index.toPath()));
+        } catch (IOException ex) {
+            /* search the segment itself */
+            logger.log(Level.SEVERE, null, ex);
+            return true;
+        }
+        for (int offset = 0; offset + LogWriter.INDEX_ENTRY_SIZE <= entries.limit(); offset += LogWriter.INDEX_ENTRY_SIZE) {
+            if (entries.getInt(offset) == instance_id && entries.getInt(offset + 4) == chain_id
+                    && entries.getLong(offset + 8) <= last_seq && entries.getLong(offset + 16) >= first_seq) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* All records of a row , oldest first */
+    public List<LogRecord> lookup(int instance_id, int chain_id, long seq_no) {
+        return lookup(instance_id, chain_id, seq_no, seq_no);
+    }
+
+    /**
+     * All records of the rows in a range of sequence numbers.
+     *
+     * @param instance_id - Instance id
+     * @param chain_id - Chain id
+     * @param first_seq - First sequence number
+     * @param last_seq - Last sequence number (inclusive)
+     * @return - Records ordered by sequence number , then oldest first
+     */
+    public List<LogRecord> lookup(int instance_id, int chain_id, long first_seq, long last_seq) {
+        List<LogRecord> records = new ArrayList<>();
+        String key = instance_id + "_" + chain_id;
+        List<long[]> chain_runs = runs.get(key);
+        if (chain_runs == null) {
+            return records;
+        }
+        long[] max_last = max_last_seq.get(key);
+        /* last run starting at or before last_seq */
+        int low = 0;
+        int high = chain_runs.size() - 1;
+        int last_run = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (chain_runs.get(mid)[0] <= last_seq) {
+                last_run = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        /* walk back while an earlier run can still reach first_seq */
+        for (int i = last_run; i >= 0 && max_last[i] >= first_seq; i--) {
+            long[] run = chain_runs.get(i);
+            if (run[1] < first_seq) {
+                continue;
+            }
+            for (long r = firstAtOrAbove(run, first_seq); r < run[2] + run[3]; r++) {
+                LogRecord record = recordAt(r);
+                if (record.getSeq_no() > last_seq) {
+                    break;
+                }
+                records.add(record);
+            }
+        }
+        records.sort(Comparator.comparingLong(LogRecord::getSeq_no).thenComparingLong(LogRecord::getTimestamp));
+        return records;
+    }
+
+    /* Number of the first record of a run with a sequence number of at least seq_no */
+    private long firstAtOrAbove(long[] run, long seq_no) {
+        long low = run[2];
+        long high = run[2] + run[3];
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (seqAt(mid) < seq_no) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private long seqAt(long record) {
+        return chunks.get((int) (record / CHUNK_RECORDS)).getLong((int) (record % CHUNK_RECORDS) * LogRecord.RECORD_SIZE + 8);
+    }
+
+    private LogRecord recordAt(long record) {
+        return LogRecord.decode(chunks.get((int) (record / CHUNK_RECORDS)), (int) (record % CHUNK_RECORDS) * LogRecord.RECORD_SIZE);
+    }
+
+    /* Load the run index , returns the number of records it covers */
+    private long loadIndex(File index) throws IOException {
+        long indexed = 0;
+        if (!index.exists()) {
+            return indexed;
+        }
+        ByteBuffer entries = ByteBuffer.wrap(Files.readAllBytes(index.toPath()));
+        while (entries.remaining() >= LogWriter.INDEX_ENTRY_SIZE) {
+            String key = entries.getInt() + "_" + entries.getInt();
+            long[] run = new long[]{entries.getLong(), entries.getLong(), entries.getLong(), entries.getLong()};
+            if (run[2] + run[3] > record_count) {
+                /* index entry written ahead of a log that lost its tail */
+                continue;
+            }
+            runs.computeIfAbsent(key, k -> new ArrayList<>()).add(run);
+            indexed = Math.max(indexed, run[2] + run[3]);
+        }
+        return indexed;
+    }
+
+    /* Index the records after the last indexed run */
+    private void indexTail(long first_record) {
+        long[] run = null;
+        int run_instance_id = 0;
+        int run_chain_id = 0;
+        for (long r = first_record; r < record_count; r++) {
+            ByteBuffer chunk = chunks.get((int) (r / CHUNK_RECORDS));
+            int offset = (int) (r % CHUNK_RECORDS) * LogRecord.RECORD_SIZE;
+            int instance_id = chunk.getInt(offset);
+            int chain_id = chunk.getInt(offset + 4);
+            long seq_no = chunk.getLong(offset + 8);
+            if (run == null || instance_id != run_instance_id || chain_id != run_chain_id || seq_no <= run[1]) {
+                run = new long[]{seq_no, seq_no, r, 0};
+                run_instance_id = instance_id;
+                run_chain_id = chain_id;
+                runs.computeIfAbsent(instance_id + "_" + chain_id, k -> new ArrayList<>()).add(run);
+            }
+            run[1] = seq_no;
+            run[3]++;
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 4 || args.length > 5) {
+            System.err.println("Invalid Number Of Arguments Supplied.");
+            System.err.println("Java program should be run using :");
+            System.err.println("java LogLookup <LOG_FILE> <INSTANCE_ID> <CHAIN_ID> <SEQUENCE_NO> <LAST_SEQUENCE_NO - OPTIONAL>");
+            System.err.println("<LOG_FILE> is the live log , its rotated segments are searched as well");
+            throw new Error("Invalid Number Of Arguments Supplied.");
+        }
+        try {
+            int instance_id = Integer.parseInt(args[1]);
+            int chain_id = Integer.parseInt(args[2]);
+            long first_seq = Long.parseLong(args[3]);
+            long last_seq = args.length == 5 ? Long.parseLong(args[4]) : first_seq;
+            List<LogRecord> records = lookupAll(args[0], instance_id, chain_id, first_seq, last_seq);
+            for (LogRecord record : records) {
+                System.out.println(record);
+            }
+            if (records.isEmpty()) {
+                System.err.println("No log records for instance id : " + instance_id + " , chain id : " + chain_id
+                        + " , sequence no : " + first_seq + (last_seq != first_seq ? " to " + last_seq : ""));
+            }
+        } catch (NumberFormatException ex) {
+            System.err.println("INSTANCE_ID , CHAIN_ID AND SEQUENCE_NO MUST BE AN INTEGER");
+        }
+    }
+}
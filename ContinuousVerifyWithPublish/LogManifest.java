@@ -0,0 +1,125 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * Manifest of the rotated segments of a local verification log , kept in
+ * "<log>.manifest" with one tab separated line per segment , oldest first :
+ * segment_file index_file record_count rotated_at_millis
+ * A segment is renamed out of the way of the live log when it is rotated , and
+ * replaced by its GZIP compressed copy once that copy is durable.
+ */
+public class LogManifest {
+
+    private static final Logger logger = Logger.getLogger(LogManifest.class.getName());
+    private final String file;
+
+    public LogManifest(String log_path) {
+        this.file = log_path + ".manifest";
+    }
+
+    /* Rotated segments , oldest first , as {segment_file , index_file , record_count , rotated_at_millis} */
+    public synchronized List<String[]> getSegments() {
+        List<String[]> segments = new ArrayList<>();
+        File f = new File(file);
+        if (!f.exists()) {
+            return segments;
+        }
+        try {
+            for (String line : Files.readAllLines(f.toPath(), StandardCharsets.UTF_8)) {
+                if (!line.trim().isEmpty()) {
+                    segments.add(line.trim().split("\t"));
+                }
+            }
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        }
+        return segments;
+    }
+
+    /* Add a newly rotated segment */
+    public synchronized void addSegment(String segment, String index, long record_count) {
+        List<String[]> segments = getSegments();
+        segments.add(new String[]{segment, index, String.valueOf(record_count), String.valueOf(System.currentTimeMillis())});
+        write(segments);
+    }
+
+    /**
+     * Compress a rotated segment. The manifest points at the compressed copy
+     * once it is durable , and only then is the uncompressed segment deleted ,
+     * so a reader always finds every record in one of the two.
+     *
+     * @param segment - Segment file as listed in the manifest
+     */
+    public void compress(String segment) {
+        File source = new File(segment);
+        File target = new File(segment + ".gz");
+        File tmp = new File(segment + ".gz.tmp");
+        try {
+            try ( InputStream in = new BufferedInputStream(new FileInputStream(source));  FileOutputStream fos = new FileOutputStream(tmp);
+                     GZIPOutputStream out = new GZIPOutputStream(new BufferedOutputStream(fos), 64 * 1024)) {
+                byte[] buf = new byte[64 * 1024];
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    out.write(buf, 0, n);
+                }
+                out.finish();
+                out.flush();
+                fos.getFD().sync();
+            }
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            synchronized (this) {
+                List<String[]> segments = getSegments();
+                for (String[] entry : segments) {
+                    if (entry[0].equals(segment)) {
+                        entry[0] = target.getPath();
+                    }
+                }
+                write(segments);
+            }
+            source.delete();
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, null, ex);
+            tmp.delete();
+        }
+    }
+
+    /* Write the manifest through a temporary file , replacing the old manifest atomically */
+    private void write(List<String[]> segments) {
+        File tmp = new File(file + ".tmp");
+        try {
+            try ( FileOutputStream fos = new FileOutputStream(tmp)) {
+                StringBuilder text = new StringBuilder();
+                for (String[] entry : segments) {
+                    text.append(String.join("\t", entry)).append("\n");
+                }
+                fos.write(text.toString().getBytes(StandardCharsets.UTF_8));
+                fos.getFD().sync();
+            }
+            Files.move(tmp.toPath(), new File(file).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        }
+    }
+}
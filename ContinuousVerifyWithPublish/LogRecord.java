@@ -0,0 +1,145 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+
+
+/**
+ * Fixed-width record of the binary local verification log.
+ *
+ * Log file layout (big endian):
+ * header  : magic(4) version(4) record_size(4) reserved(4)
+ * record  : instance_id(4) chain_id(4) sequence_no(8) timestamp(8) result(1) flags(1) reserved(6) hash(64) expected_hash(64)
+ *
+ * The hash is the hash calculated by the verifier. A row that failed
+ * verification also keeps the hash stored in the table , flags bit 0 tells
+ * whether expected_hash is set. Records of one chain are
+ * appended in increasing sequence order within a verification run , and the
+ * log writer indexes every such run (see LogLookup).
+ */
+public class LogRecord {
+
+    public static final int MAGIC = 0x42434C47;
+    public static final int VERSION = 2;
+    public static final int HEADER_SIZE = 16;
+    public static final int HASH_SIZE = 64;
+    public static final int RECORD_SIZE = 32 + 2 * HASH_SIZE;
+    private static final int FLAG_EXPECTED_HASH = 1;
+    final private int instance_id;
+    final private int chain_id;
+    final private long seq_no;
+    final private long timestamp;
+    final private boolean result;
+    final private String hash;
+    final private String expected_hash;
+
+    private LogRecord(int instance_id, int chain_id, long seq_no, long timestamp, boolean result, String hash, String expected_hash) {
+        this.instance_id = instance_id;
+        this.chain_id = chain_id;
+        this.seq_no = seq_no;
+        this.timestamp = timestamp;
+        this.result = result;
+        this.hash = hash;
+        this.expected_hash = expected_hash;
+    }
+
+    /* Header written at the start of every log file */
+    public static byte[] header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(0);
+        return header.array();
+    }
+
+    /* Is this a log file header of the current format ? */
+    public static boolean isHeader(ByteBuffer buffer) {
+        return buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION && buffer.getInt(8) == RECORD_SIZE;
+    }
+
+    /**
+     * Encode a record.
+     *
+     * @param instance_id - Instance id
+     * @param chain_id - Chain id
+     * @param seq_no - Sequence number
+     * @param result - Did the row pass verification
+     * @param hash - Calculated hash in hex
+     * @param expected_hash - Stored hash in hex of a row that failed
+     * verification , null otherwise
+     * @return - Record bytes
+     */
+    public static byte[] encode(int instance_id, int chain_id, long seq_no, boolean result, String hash, String expected_hash) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.putInt(instance_id).putInt(chain_id).putLong(seq_no).putLong(System.currentTimeMillis());
+        record.put((byte) (result ? 1 : 0));
+        record.put((byte) (expected_hash != null ? FLAG_EXPECTED_HASH : 0));
+        putHex(record, 32, hash);
+        putHex(record, 32 + HASH_SIZE, expected_hash);
+        return record.array();
+    }
+
+    /* Decode the record at an offset of a buffer */
+    public static LogRecord decode(ByteBuffer buffer, int offset) {
+        boolean has_expected = (buffer.get(offset + 25) & FLAG_EXPECTED_HASH) != 0;
+        return new LogRecord(buffer.getInt(offset), buffer.getInt(offset + 4), buffer.getLong(offset + 8),
+                buffer.getLong(offset + 16), buffer.get(offset + 24) == 1, hexAt(buffer, offset + 32),
+                has_expected ? hexAt(buffer, offset + 32 + HASH_SIZE) : null);
+    }
+
+    private static void putHex(ByteBuffer record, int offset, String hash) {
+        for (int i = 0; hash != null && i < HASH_SIZE && 2 * i + 2 <= hash.length(); i++) {
+            record.put(offset + i, (byte) Integer.parseInt(hash.substring(2 * i, 2 * i + 2), 16));
+        }
+    }
+
+    private static String hexAt(ByteBuffer buffer, int offset) {
+        StringBuilder hex = new StringBuilder(2 * HASH_SIZE);
+        for (int i = 0; i < HASH_SIZE; i++) {
+            int b = buffer.get(offset + i) & 0xFF;
+            hex.append(Character.toUpperCase(Character.forDigit(b >> 4, 16)));
+            hex.append(Character.toUpperCase(Character.forDigit(b & 0xF, 16)));
+        }
+        return hex.toString();
+    }
+
+    public int getInstance_id() {
+        return instance_id;
+    }
+
+    public int getChain_id() {
+        return chain_id;
+    }
+
+    public long getSeq_no() {
+        return seq_no;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public boolean isResult() {
+        return result;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    /* Stored hash of a row that failed verification , null if not recorded */
+    public String getExpected_hash() {
+        return expected_hash;
+    }
+
+    @Override
+    public String toString() {
+        return (result ? "Hash Verification successful" : "Hash Verification Failed") + " for instance id : " + instance_id
+                + " , chain id : " + chain_id + " , sequence no : " + seq_no + " at " + new Timestamp(timestamp)
+                + ". " + (result ? "Verified Hash: " : "GOT : ") + hash + (expected_hash != null ? " , Expected Hash : " + expected_hash : "");
+    }
+}
@@ -0,0 +1,335 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Long-lived writer of the local verification log of a table. Verifier
+ * threads queue records without taking a lock , and a single background
+ * thread writes them in batches over one open FileChannel. Written records
+ * are made durable together (group commit) once log_sync_records records are
+ * pending or log_sync_millis have passed , whichever comes first.
+ *
+ * Records are fixed-width LogRecords. The writer also keeps a sparse index
+ * next to the log with one entry per run , a run being consecutive records of
+ * one chain in increasing sequence order :
+ * entry : instance_id(4) chain_id(4) first_seq(8) last_seq(8) first_record(8) record_count(8)
+ * A run is indexed once it ends or the log is synced on request.
+ *
+ * Once the log reaches log_rotate_mb it is rotated by renaming the log and its
+ * index to a timestamped segment listed in the LogManifest , and the next
+ * record starts a new log. Rotated segments are compressed in the background.
+ */
+public class LogWriter {
+
+    private static final Logger logger = Logger.getLogger(LogWriter.class.getName());
+    /* "<schema>_<table>" -> writer */
+    private static final Map<String, LogWriter> writers = new ConcurrentHashMap<>();
+    private static final int BATCH_BYTES = 1024 * 1024;
+    public static final int INDEX_ENTRY_SIZE = 40;
+    /* Compresses rotated segments of all logs off the writer threads */
+    private static final ExecutorService compressor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "log-compressor");
+        t.setDaemon(true);
+        return t;
+    });
+    private final String path;
+    private final String index_path;
+    private final ConcurrentLinkedQueue<byte[]> queue = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private final int sync_records;
+    private final long sync_nanos;
+    private final long rotate_bytes;
+    private final LogManifest manifest;
+    /* Records queued so far */
+    private final AtomicLong queued = new AtomicLong();
+    /* Records written so far , only touched by the writer thread */
+    private long written;
+    /* Records made durable so far */
+    private volatile long synced;
+    private volatile boolean sync_requested;
+    /* Set once the writer thread failed , every later append or sync reports it */
+    private volatile IOException failure;
+    /* Guards the channel and its index , which are closed and reopened when the log is rotated */
+    private final Object channel_lock = new Object();
+    private FileChannel channel;
+    private FileChannel index_channel;
+    /* Current run and the number of the next record in the log , only touched by the writer thread */
+    private int run_instance_id;
+    private int run_chain_id;
+    private long run_first_seq;
+    private long run_last_seq;
+    private long run_first_record;
+    private long run_count;
+    private long next_record;
+
+    private LogWriter(String path) {
+        this.path = path;
+        this.index_path = path.substring(0, path.lastIndexOf('.')) + ".idx";
+        this.sync_records = Modes.getInstance().getLOG_SYNC_RECORDS();
+        this.sync_nanos = TimeUnit.MILLISECONDS.toNanos(Modes.getInstance().getLOG_SYNC_MILLIS());
+        this.rotate_bytes = Modes.getInstance().getLOG_ROTATE_MB() * 1024L * 1024L;
+        this.manifest = new LogManifest(path);
+        /* Finish compressing segments rotated before a restart */
+        if (Modes.getInstance().isLOG_COMPRESS()) {
+            for (String[] segment : manifest.getSegments()) {
+                if (!segment[0].endsWith(".gz") && new File(segment[0]).exists()) {
+                    compressor.execute(() -> manifest.compress(segment[0]));
+                }
+            }
+        }
+        thread = new Thread(this::run, "log-writer-" + path);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Get the log writer of a table , starting it on first use.
+     *
+     * @param schema - Schema name
+     * @param table - Table name
+     * @return - Log writer of this table
+     */
+    public static LogWriter getInstance(String schema, String table) {
+        return writers.computeIfAbsent(schema + "_" + table, k -> {
+            String db_guid = DBUtils.getDBUtils().getDbGUID();
+            return new LogWriter(Utils.getUtils().cleanPath(schema + "_" + table + "_" + db_guid + ".vlog"));
+        });
+    }
+
+    /* Path of the log file */
+    public String getPath() {
+        return path;
+    }
+
+    /* Path of the run index of the log file */
+    public String getIndex_path() {
+        return index_path;
+    }
+
+    /* Queue a LogRecord , it is written by the background thread */
+    public void append(byte[] record) {
+        checkFailure();
+        queue.offer(record);
+        if (queued.incrementAndGet() - synced >= sync_records) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /* Block until every record queued before this call is durable */
+    public void sync() {
+        long target = queued.get();
+        synchronized (this) {
+            while (synced < target) {
+                checkFailure();
+                if (!thread.isAlive()) {
+                    throw new Error("Log writer of " + path + " stopped");
+                }
+                sync_requested = true;
+                LockSupport.unpark(thread);
+                try {
+                    wait(100);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /* Writer thread : drain the queue in batches and group-commit */
+    private void run() {
+        ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_BYTES);
+        ByteBuffer index_batch = ByteBuffer.allocate(BATCH_BYTES);
+        long last_sync = System.nanoTime();
+        while (true) {
+            try {
+                if (!queue.isEmpty()) {
+                    open();
+                }
+                byte[] record;
+                while ((record = queue.poll()) != null) {
+                    if (record.length > batch.remaining() || index_batch.remaining() < INDEX_ENTRY_SIZE) {
+                        writeBatch(batch, index_batch);
+                    }
+                    addToRun(ByteBuffer.wrap(record), index_batch);
+                    batch.put(record);
+                    written++;
+                }
+                boolean requested = sync_requested;
+                long now = System.nanoTime();
+                if (requested) {
+                    /* Make the current run visible to readers */
+                    endRun(index_batch);
+                }
+                writeBatch(batch, index_batch);
+                if (requested || (written > synced && (written - synced >= sync_records || now - last_sync >= sync_nanos))) {
+                    synchronized (channel_lock) {
+                        if (channel != null) {
+                            channel.force(false);
+                            index_channel.force(false);
+                        }
+                    }
+                    last_sync = now;
+                    synced = written;
+                    sync_requested = false;
+                    synchronized (this) {
+                        notifyAll();
+                    }
+                }
+                if (channel != null && channel.size() >= rotate_bytes) {
+                    rotate(batch, index_batch);
+                }
+                LockSupport.parkNanos(this, sync_nanos);
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE, null, ex);
+                failure = ex;
+                synchronized (this) {
+                    notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    /* Report a failure of the writer thread to the verifier */
+    private void checkFailure() {
+        if (failure != null) {
+            throw new Error("Unable to write the log " + path + " : " + failure.getMessage());
+        }
+    }
+
+    /**
+     * Rotate the log. The segment is listed in the manifest first and the
+     * index is renamed before the log , so a crash at any point leaves every
+     * record either in the live log or in a listed segment.
+     */
+    private void rotate(ByteBuffer batch, ByteBuffer index_batch) throws IOException {
+        endRun(index_batch);
+        writeBatch(batch, index_batch);
+        String base = path.substring(0, path.lastIndexOf('.')) + "_" + System.currentTimeMillis();
+        String segment = base + ".vlog";
+        synchronized (channel_lock) {
+            channel.force(false);
+            index_channel.force(false);
+            channel.close();
+            index_channel.close();
+            channel = null;
+            index_channel = null;
+            manifest.addSegment(segment, base + ".idx", next_record);
+            Files.move(Paths.get(index_path), Paths.get(base + ".idx"), StandardCopyOption.ATOMIC_MOVE);
+            Files.move(Paths.get(path), Paths.get(segment), StandardCopyOption.ATOMIC_MOVE);
+        }
+        synced = written;
+        synchronized (this) {
+            notifyAll();
+        }
+        System.out.println("Rotated the log to " + segment);
+        if (Modes.getInstance().isLOG_COMPRESS()) {
+            compressor.execute(() -> manifest.compress(segment));
+        }
+    }
+
+    /* Add a record to the current run , ending the run first if the record does not continue it */
+    private void addToRun(ByteBuffer record, ByteBuffer index_batch) {
+        int instance_id = record.getInt(0);
+        int chain_id = record.getInt(4);
+        long seq_no = record.getLong(8);
+        if (run_count > 0 && (instance_id != run_instance_id || chain_id != run_chain_id || seq_no <= run_last_seq)) {
+            endRun(index_batch);
+        }
+        if (run_count == 0) {
+            run_instance_id = instance_id;
+            run_chain_id = chain_id;
+            run_first_seq = seq_no;
+            run_first_record = next_record;
+        }
+        run_last_seq = seq_no;
+        run_count++;
+        next_record++;
+    }
+
+    /* Add the index entry of the current run */
+    private void endRun(ByteBuffer index_batch) {
+        if (run_count == 0) {
+            return;
+        }
+        index_batch.putInt(run_instance_id).putInt(run_chain_id).putLong(run_first_seq).putLong(run_last_seq)
+                .putLong(run_first_record).putLong(run_count);
+        run_count = 0;
+    }
+
+    /* Open the log and its index if they are closed , writing the header of a new log */
+    private void open() throws IOException {
+        synchronized (channel_lock) {
+            if (channel != null) {
+                return;
+            }
+            channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            index_channel = FileChannel.open(Paths.get(index_path), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.wrap(LogRecord.header());
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+            } else if (!hasHeader()) {
+                /* Records of another size would be appended to it */
+                throw new IOException("Not a verification log of version " + LogRecord.VERSION + " : " + path);
+            }
+            next_record = (channel.size() - LogRecord.HEADER_SIZE) / LogRecord.RECORD_SIZE;
+        }
+    }
+
+    /* Does the existing log start with the header of the current format ? */
+    private boolean hasHeader() throws IOException {
+        try ( FileChannel log = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            if (log.size() < LogRecord.HEADER_SIZE) {
+                return false;
+            }
+            ByteBuffer header = ByteBuffer.allocate(LogRecord.HEADER_SIZE);
+            while (header.hasRemaining()) {
+                log.read(header, header.position());
+            }
+            return LogRecord.isHeader(header);
+        }
+    }
+
+    /* Write the records and index entries collected so far and empty the batches */
+    private void writeBatch(ByteBuffer batch, ByteBuffer index_batch) throws IOException {
+        batch.flip();
+        index_batch.flip();
+        synchronized (channel_lock) {
+            while (channel != null && batch.hasRemaining()) {
+                channel.write(batch);
+            }
+            while (index_channel != null && index_batch.hasRemaining()) {
+                index_channel.write(index_batch);
+            }
+        }
+        batch.clear();
+        index_batch.clear();
+    }
+}
@@ -0,0 +1,288 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.json.JSONArray;
+
+
+/**
+ * Publishes the logs of rows verified successfully as batches anchored by the
+ * root of a Merkle tree , one OBP transaction per batch. A batch holds the rows
+ * of one table verified in a cycle , at most obp_merkle_batch_rows. The tree is
+ * kept locally so MerkleProof can prove that the log of any row is included
+ * under the root anchored with the storeMerkleRoot chaincode function.
+ *
+ * Until its root is anchored , a batch file has a "<batch file>.pending" file
+ * next to it holding the storeMerkleRoot arguments. Pending batches of a table
+ * are submitted again when it is flushed , which also picks up batches left
+ * unanchored before a restart.
+ *
+ * Leaves are sorted by instance , chain and sequence number. A leaf hash is
+ * SHA-256(0x00 || leaf record) and a node hash SHA-256(0x01 || left || right) ,
+ * the last node of a level with an odd number of nodes moves up unchanged.
+ *
+ * Batch file : "<schema>_<table>_<guid>_<batch_id>.mrk" , big endian :
+ * header : magic(4) version(4) batch_id(8) leaf_count(4) root(32)
+ * leaves : leaf_count x instance_id(4) chain_id(4) sequence_no(8) result(1) hash(64) expected_hash(64)
+ * levels : the node hashes of every level from the leaves up to the root , 32 bytes each
+ */
+public class MerkleBatch {
+
+    private static MerkleBatch instance;
+    private static final Logger logger = Logger.getLogger(MerkleBatch.class.getName());
+    public static final int MAGIC = 0x42434D4B;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 32;
+    public static final int LEAF_SIZE = 4 + 4 + 8 + 1 + 64 + 64;
+    public static final int NODE_SIZE = 32;
+    private static final int HASH_SIZE = 64;
+    /* "<schema>.<table>" -> logs of the open batch */
+    private final Map<String, List<LogBuilder>> batches = new HashMap<>();
+    private final int batch_rows;
+    private long last_batch_id;
+    /* pending files of the batches being anchored */
+    private final Set<String> in_flight = new HashSet<>();
+
+    public static synchronized MerkleBatch getInstance() {
+        if (instance == null) {
+            instance = new MerkleBatch();
+        }
+        return instance;
+    }
+
+    private MerkleBatch() {
+        this.batch_rows = OBPUtils.getInstance().getObp_merkle_batch_rows();
+    }
+
+    /* Add the log of a verified row , closing its batch when full */
+    public void add(LogBuilder log) {
+        List<LogBuilder> full = null;
+        synchronized (this) {
+            List<LogBuilder> batch = batches.computeIfAbsent(log.getSchema_name() + "." + log.getTable_name(), k -> new ArrayList<>());
+            batch.add(log);
+            if (batch.size() >= batch_rows) {
+                full = batches.remove(log.getSchema_name() + "." + log.getTable_name());
+            }
+        }
+        if (full != null) {
+            publish(full);
+        }
+    }
+
+    /**
+     * Close the open batch of a table.
+     *
+     * @param schema_name - Schema name
+     * @param table_name - Table name
+     */
+    public void flush(String schema_name, String table_name) {
+        List<LogBuilder> batch;
+        synchronized (this) {
+            batch = batches.remove(schema_name + "." + table_name);
+        }
+        resubmit(schema_name, table_name);
+        if (batch != null && !batch.isEmpty()) {
+            publish(batch);
+        }
+    }
+
+    /* Submit the roots of the batches of a table that are not anchored yet */
+    private void resubmit(String schema_name, String table_name) {
+        String prefix = Utils.getUtils().cleanPath(schema_name + "_" + table_name + "_" + DBUtils.getDBUtils().getDbGUID() + "_");
+        File dir = new File(prefix).getAbsoluteFile().getParentFile();
+        String name = new File(prefix).getName();
+        File[] pending = dir.listFiles((d, f) -> f.startsWith(name) && f.endsWith(".mrk.pending"));
+        if (pending == null) {
+            return;
+        }
+        for (File file : pending) {
+            synchronized (this) {
+                if (in_flight.contains(file.getPath())) {
+                    continue;
+                }
+            }
+            /* A crash between writing the pending file and the batch file leaves nothing to anchor */
+            String batch_path = file.getPath().substring(0, file.getPath().length() - ".pending".length());
+            if (!new File(batch_path).exists()) {
+                file.delete();
+                continue;
+            }
+            try {
+                JSONArray args = new JSONArray(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+                System.out.println("Anchoring the Merkle root of " + file.getName() + " again");
+                anchor(args, file);
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+
+    /* Anchor the root of a batch , its pending file is removed once the root is anchored */
+    private void anchor(JSONArray args, File pending) {
+        synchronized (this) {
+            if (!in_flight.add(pending.getPath())) {
+                return;
+            }
+        }
+        CommitTracker.getInstance().submit(args).thenAccept(anchored -> {
+            synchronized (this) {
+                in_flight.remove(pending.getPath());
+            }
+            if (anchored) {
+                pending.delete();
+                System.out.println("Anchored the Merkle root of " + args.getString(6) + " rows of " + args.getString(1) + "." + args.getString(2)
+                        + " , batch id : " + args.getString(4));
+            } else {
+                System.err.println("Failed to anchor the Merkle root of batch id : " + args.getString(4) + " , it is anchored again when the table is flushed next");
+            }
+        });
+    }
+
+    /* Write the tree of a batch and anchor its root */
+    private void publish(List<LogBuilder> batch) {
+        batch.sort(Comparator.comparing(LogBuilder::getInstance_id).thenComparing(LogBuilder::getChain_id).thenComparing(LogBuilder::getSeq_no));
+        LogBuilder first = batch.get(0);
+        LogBuilder last = batch.get(batch.size() - 1);
+        long batch_id = nextBatchId();
+        byte[][] leaves = new byte[batch.size()][];
+        for (int i = 0; i < leaves.length; i++) {
+            leaves[i] = leafRecord(batch.get(i));
+        }
+        List<byte[][]> levels = buildLevels(leaves);
+        byte[] root = levels.get(levels.size() - 1)[0];
+        String prefix = first.getSchema_name() + "_" + first.getTable_name() + "_" + DBUtils.getDBUtils().getDbGUID() + "_";
+        File file = new File(Utils.getUtils().cleanPath(prefix + batch_id + ".mrk"));
+        File tmp = new File(file.getPath() + ".tmp");
+        try ( FileOutputStream fos = new FileOutputStream(tmp);  DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(batch_id);
+            out.writeInt(leaves.length);
+            out.write(root);
+            for (byte[] leaf : leaves) {
+                out.write(leaf);
+            }
+            for (byte[][] level : levels) {
+                for (byte[] node : level) {
+                    out.write(node);
+                }
+            }
+            out.flush();
+            fos.getFD().sync();
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, null, ex);
+            throw new Error("Unable to write the Merkle batch " + file.getPath());
+        }
+        JSONArray args = new JSONArray();
+        args.put("storeMerkleRoot");
+        args.put(first.getSchema_name());
+        args.put(first.getTable_name());
+        args.put(DBUtils.getDBUtils().getDbGUID());
+        args.put(String.valueOf(batch_id));
+        args.put(Utils.getUtils().bytesToHex(root));
+        args.put(String.valueOf(leaves.length));
+        args.put(new JSONArray().put(first.getInstance_id()).put(first.getChain_id()).put(first.getSeq_no()).toString());
+        args.put(new JSONArray().put(last.getInstance_id()).put(last.getChain_id()).put(last.getSeq_no()).toString());
+        /* The pending file goes first , so a batch file never exists without it until its root is anchored */
+        File pending = new File(file.getPath() + ".pending");
+        try {
+            try ( FileOutputStream fos = new FileOutputStream(pending)) {
+                fos.write(args.toString().getBytes(StandardCharsets.UTF_8));
+                fos.getFD().sync();
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, null, ex);
+            throw new Error("Unable to write the Merkle batch " + file.getPath());
+        }
+        anchor(args, pending);
+    }
+
+    /* Batch ids are the creation time in milliseconds , made unique */
+    private synchronized long nextBatchId() {
+        last_batch_id = Math.max(last_batch_id + 1, System.currentTimeMillis());
+        return last_batch_id;
+    }
+
+    /* Fixed-width record of the log of a row , the content of a leaf */
+    static byte[] leafRecord(LogBuilder log) {
+        ByteBuffer leaf = ByteBuffer.allocate(LEAF_SIZE);
+        leaf.putInt(log.getInstance_id()).putInt(log.getChain_id()).putLong(log.getSeq_no());
+        leaf.put((byte) (log.isResult() ? 1 : 0));
+        leaf.put(hashBytes(log.getHash()));
+        leaf.put(hashBytes(log.isResult() ? null : log.getExpected_hash()));
+        return leaf.array();
+    }
+
+    /**
+     * Node hashes of every level of the tree , from the leaves up to the root.
+     *
+     * @param leaves - Leaf records
+     * @return - levels , the last one holding only the root
+     */
+    static List<byte[][]> buildLevels(byte[][] leaves) {
+        List<byte[][]> levels = new ArrayList<>();
+        byte[][] level = new byte[leaves.length][];
+        for (int i = 0; i < leaves.length; i++) {
+            level[i] = hash((byte) 0, leaves[i], null);
+        }
+        levels.add(level);
+        while (level.length > 1) {
+            byte[][] parents = new byte[(level.length + 1) / 2][];
+            for (int i = 0; i < parents.length; i++) {
+                parents[i] = 2 * i + 1 < level.length ? hash((byte) 1, level[2 * i], level[2 * i + 1]) : level[2 * i];
+            }
+            levels.add(parents);
+            level = parents;
+        }
+        return levels;
+    }
+
+    /* SHA-256 of a prefix byte followed by one or two inputs */
+    static byte[] hash(byte prefix, byte[] left, byte[] right) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(prefix);
+            md.update(left);
+            if (right != null) {
+                md.update(right);
+            }
+            return md.digest();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new Error(ex);
+        }
+    }
+
+    private static byte[] hashBytes(String hash) {
+        byte[] bytes = new byte[HASH_SIZE];
+        if (hash != null) {
+            byte[] hex = Utils.getUtils().hexToBytes(hash);
+            System.arraycopy(hex, 0, bytes, 0, Math.min(HASH_SIZE, hex.length));
+        }
+        return bytes;
+    }
+}
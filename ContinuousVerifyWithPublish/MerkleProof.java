@@ -0,0 +1,227 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+
+/**
+ * Proves that the log of a row is included in a Merkle batch whose root is
+ * anchored on OBP. The batches holding the row are found among the local
+ * batch files of the table , anchored ones first , and the row is proven if
+ * any of them proves it. The inclusion proof is read from the tree , and the
+ * root recomputed from the leaf and the proof must equal the anchored root.
+ * The leaf hash must also equal the current stored hash of the row , so the
+ * row is unchanged since it was verified.
+ */
+public class MerkleProof {
+
+    private static final Logger logger = Logger.getLogger(MerkleProof.class.getName());
+
+    /**
+     * Prove that the log of a row is included under an anchored root.
+     *
+     * @param schema_name_int - Schema name
+     * @param table_name_int - Table name
+     * @param instance_id - Instance id
+     * @param chain_id - Chain id
+     * @param seq_no - Sequence number of the row
+     * @return - if the row is proven
+     */
+    public static boolean prove(String schema_name_int, String table_name_int, int instance_id, int chain_id, long seq_no) {
+        String prefix = Utils.getUtils().cleanPath(schema_name_int + "_" + table_name_int + "_" + DBUtils.getDBUtils().getDbGUID() + "_");
+        File dir = new File(prefix).getAbsoluteFile().getParentFile();
+        String name = new File(prefix).getName();
+        File[] files = dir.listFiles((d, f) -> f.startsWith(name) && f.endsWith(".mrk"));
+        if (files == null || files.length == 0) {
+            System.err.println("No Merkle batch holds instance id : " + instance_id + " , chain id : " + chain_id + " , sequence no : " + seq_no);
+            return false;
+        }
+        /* A row verified again after a restart is in several batches , those whose root is not anchored yet are tried last */
+        Arrays.sort(files, Comparator.comparing(file -> new File(file.getPath() + ".pending").exists()));
+        boolean found = false;
+        for (File file : files) {
+            try ( FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                ByteBuffer header = read(channel, 0, MerkleBatch.HEADER_SIZE);
+                if (header.getInt(0) != MerkleBatch.MAGIC || header.getInt(4) != MerkleBatch.VERSION) {
+                    continue;
+                }
+                int leaf_count = header.getInt(16);
+                int index = find(channel, leaf_count, instance_id, chain_id, seq_no);
+                if (index < 0) {
+                    continue;
+                }
+                found = true;
+                if (proveLeaf(channel, header, leaf_count, index, schema_name_int, table_name_int)) {
+                    return true;
+                }
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE, null, ex);
+            }
+        }
+        if (!found) {
+            System.err.println("No Merkle batch holds instance id : " + instance_id + " , chain id : " + chain_id + " , sequence no : " + seq_no);
+        }
+        return false;
+    }
+
+    private static boolean proveLeaf(FileChannel channel, ByteBuffer header, int leaf_count, int index, String schema_name_int,
+            String table_name_int) throws IOException {
+        long batch_id = header.getLong(8);
+        byte[] root = Arrays.copyOfRange(header.array(), 20, 52);
+        ByteBuffer leaf = read(channel, MerkleBatch.HEADER_SIZE + (long) index * MerkleBatch.LEAF_SIZE, MerkleBatch.LEAF_SIZE);
+        int instance_id = leaf.getInt(0);
+        int chain_id = leaf.getInt(4);
+        long seq_no = leaf.getLong(8);
+        /* Sibling of the node on every level , null where the node moves up unchanged */
+        List<byte[]> proof = new ArrayList<>();
+        long level_offset = MerkleBatch.HEADER_SIZE + (long) leaf_count * MerkleBatch.LEAF_SIZE;
+        int level_size = leaf_count;
+        int position = index;
+        while (level_size > 1) {
+            int sibling = position ^ 1;
+            proof.add(sibling < level_size ? read(channel, level_offset + (long) sibling * MerkleBatch.NODE_SIZE, MerkleBatch.NODE_SIZE).array() : null);
+            level_offset += (long) level_size * MerkleBatch.NODE_SIZE;
+            level_size = (level_size + 1) / 2;
+            position /= 2;
+        }
+        /* Recompute the root from the leaf and the proof alone */
+        byte[] node = MerkleBatch.hash((byte) 0, leaf.array(), null);
+        position = index;
+        for (byte[] sibling : proof) {
+            if (sibling != null) {
+                node = (position & 1) == 0 ? MerkleBatch.hash((byte) 1, node, sibling) : MerkleBatch.hash((byte) 1, sibling, node);
+            }
+            position /= 2;
+        }
+        String location = "instance id : " + instance_id + " , chain id : " + chain_id + " , sequence no : " + seq_no;
+        if (!Arrays.equals(node, root)) {
+            System.err.println("Merkle proof does not lead to the root of batch id : " + batch_id + " for " + location);
+            return false;
+        }
+        JSONArray args = new JSONArray();
+        args.put("readMerkleRoot");
+        args.put(schema_name_int);
+        args.put(table_name_int);
+        args.put(DBUtils.getDBUtils().getDbGUID());
+        args.put(String.valueOf(batch_id));
+        JSONObject anchored = OBPConnection.getInstance().fetchData(OBPUtils.getInstance().JSONBodyBuilder(args, Constants.OBP_GET));
+        if (anchored == null || !anchored.has("root")) {
+            System.err.println("Merkle root of batch id : " + batch_id + " is not anchored on OBP");
+            return false;
+        }
+        if (!anchored.getString("root").equalsIgnoreCase(Utils.getUtils().bytesToHex(root))) {
+            System.err.println("Merkle root of batch id : " + batch_id + " differs from the anchored root");
+            System.err.println("Anchored Root : " + anchored.getString("root"));
+            System.err.println("Local Root : " + Utils.getUtils().bytesToHex(root));
+            return false;
+        }
+        boolean result = leaf.get(16) == 1;
+        String leaf_hash = Utils.getUtils().bytesToHex(Arrays.copyOfRange(leaf.array(), 17, 17 + 64));
+        String stored_hash = fetchHash(schema_name_int, table_name_int, instance_id, chain_id, seq_no);
+        if (result && !leaf_hash.equalsIgnoreCase(stored_hash)) {
+            System.err.println("Stored hash changed since it was anchored for " + location);
+            System.err.println("Anchored Hash : " + leaf_hash);
+            System.err.println("Stored Hash : " + stored_hash);
+            return false;
+        }
+        System.out.println("Proved " + location + " in batch id : " + batch_id + " with " + proof.size() + " proof nodes , verification result : " + result);
+        return true;
+    }
+
+    /* Index of the leaf of a row , leaves are sorted , -1 if the batch does not hold it */
+    private static int find(FileChannel channel, int leaf_count, int instance_id, int chain_id, long seq_no) throws IOException {
+        int low = 0;
+        int high = leaf_count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            ByteBuffer leaf = read(channel, MerkleBatch.HEADER_SIZE + (long) mid * MerkleBatch.LEAF_SIZE, 16);
+            int cmp = Integer.compare(leaf.getInt(0), instance_id);
+            if (cmp == 0) {
+                cmp = Integer.compare(leaf.getInt(4), chain_id);
+            }
+            if (cmp == 0) {
+                cmp = Long.compare(leaf.getLong(8), seq_no);
+            }
+            if (cmp == 0) {
+                return mid;
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return -1;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) > 0) {
+        }
+        return buffer;
+    }
+
+    /* Current stored hash of a row , null if the row does not exist */
+    private static String fetchHash(String schema_name_int, String table_name_int, int instance_id, int chain_id, long seq_no) {
+        Connection con = DBConnection.getInstance().getConnection();
+        String hash_qry = "select ORABCTAB_HASH$ from " + DBUtils.getDBUtils().getTableRef(schema_name_int, table_name_int) + " "
+                + "where ORABCTAB_INST_ID$ = ? and ORABCTAB_CHAIN_ID$ = ? and ORABCTAB_SEQ_NUM$ = ?";
+        try ( PreparedStatement hash_stmt = con.prepareStatement(hash_qry)) {
+            /* bind instance_id */
+            hash_stmt.setInt(1, instance_id);
+            /* bind chain_id */
+            hash_stmt.setInt(2, chain_id);
+            /* bind sequence_no */
+            hash_stmt.setLong(3, seq_no);
+            try ( ResultSet rs = hash_stmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getString(1);
+                }
+            }
+        } catch (SQLException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        }
+        return null;
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 5) {
+            System.err.println("Invalid Number Of Arguments Supplied.");
+            System.err.println("Java program should be run using :");
+            System.err.println("java MerkleProof <SCHEMA> <TABLE> <INSTANCE_ID> <CHAIN_ID> <SEQUENCE_NO>");
+            throw new Error("Invalid Number Of Arguments Supplied.");
+        }
+        try {
+            final int INSTANCE_ID = Integer.parseInt(args[2]);
+            final int CHAIN_ID = Integer.parseInt(args[3]);
+            final long SEQUENCE_NO = Long.parseLong(args[4]);
+            String schema_name_int = Utils.getUtils().cleanString(args[0], false);
+            String table_name_int = Utils.getUtils().cleanString(args[1], false);
+            prove(schema_name_int, table_name_int, INSTANCE_ID, CHAIN_ID, SEQUENCE_NO);
+            DBConnection.getInstance().closeConnection();
+        } catch (NumberFormatException ex) {
+            System.err.println("INSTANCE_ID , CHAIN_ID AND SEQUENCE_NO MUST BE INTEGERS");
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+
+/**
+ * Warm-start cache of the table metadata read from the data dictionary : the
+ * hash column and the columns hashed into the row bytes. Entries are kept in
+ * a local snapshot keyed by table and database GUID together with the
+ * LAST_DDL_TIME of the table. On start one query fetches the GUID and the
+ * current LAST_DDL_TIME , and the dictionary is only scanned again when the
+ * table has changed.
+ */
+public class MetadataCache {
+
+    private static MetadataCache instance;
+    private static final Logger logger = Logger.getLogger(MetadataCache.class.getName());
+    private boolean loaded;
+
+    public static MetadataCache getInstance() {
+        if (instance == null) {
+            instance = new MetadataCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Initialize HashColumn and ColumnData from the snapshot when the table
+     * is unchanged , otherwise from the dictionary , refreshing the snapshot.
+     *
+     * @param schema_name_int - Schema name
+     * @param table_name_int - Table name
+     */
+    public void initTableMetadata(String schema_name_int, String table_name_int) {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        String last_ddl_time = validate(schema_name_int, table_name_int);
+        String key = schema_name_int + "." + table_name_int + "@" + DBUtils.getDBUtils().getDbGUID();
+        JSONObject snapshot = read();
+        JSONObject entry = snapshot.optJSONObject(key);
+        if (last_ddl_time != null && entry != null && last_ddl_time.equals(entry.optString("last_ddl_time", null))) {
+            JSONObject hash_column = entry.getJSONObject("hash_column");
+            HashColumn.setHashColumn(hash_column.getString("type"), hash_column.getInt("position"));
+            JSONArray columns = entry.getJSONArray("columns");
+            for (int i = 0; i < columns.length(); i++) {
+                JSONArray column = columns.getJSONArray(i);
+                ColumnData.addColumnData(column.getString(0), column.getString(1), column.getInt(2));
+            }
+            System.out.println("Loaded table metadata from " + Constants.METADATA_CACHE_FILE);
+            return;
+        }
+        HashColumn.initHashColumn(schema_name_int, table_name_int);
+        ColumnData.initColumnData(schema_name_int, table_name_int);
+        if (last_ddl_time == null) {
+            return;
+        }
+        entry = new JSONObject();
+        entry.put("last_ddl_time", last_ddl_time);
+        JSONObject hash_column = new JSONObject();
+        hash_column.put("type", HashColumn.getHashColumnInstance().getColumn_type());
+        hash_column.put("position", HashColumn.getHashColumnInstance().getColumn_position());
+        entry.put("hash_column", hash_column);
+        JSONArray columns = new JSONArray();
+        for (ColumnData data : ColumnData.getColumnData()) {
+            JSONArray column = new JSONArray();
+            column.put(data.getColumn_name());
+            column.put(data.getColumn_type());
+            column.put(data.getColumn_position());
+            columns.put(column);
+        }
+        entry.put("columns", columns);
+        snapshot.put(key, entry);
+        write(snapshot);
+    }
+
+    /* Fetch the database GUID and the LAST_DDL_TIME of the table with a single query */
+    private String validate(String schema_name_int, String table_name_int) {
+        Connection con = DBConnection.getInstance().getConnection();
+        String validate_qry = "select (select guid from v$containers where rownum = 1) , "
+                + "(select to_char(last_ddl_time, 'YYYY-MM-DD HH24:MI:SS') || '/' || object_id from SYS.ALL_OBJECTS "
+                + "where OWNER = ? and OBJECT_NAME = ? and OBJECT_TYPE = 'TABLE') from dual";
+        try ( PreparedStatement validate_stmt = con.prepareStatement(validate_qry)) {
+            /* bind schema_name */
+            validate_stmt.setString(1, Utils.getUtils().unEnquoted(schema_name_int));
+            /* bind table_name */
+            validate_stmt.setString(2, Utils.getUtils().unEnquoted(table_name_int));
+            try ( ResultSet rs = validate_stmt.executeQuery()) {
+                if (rs.next()) {
+                    DBUtils.getDBUtils().setDbGUID(rs.getString(1));
+                    return rs.getString(2);
+                }
+            }
+        } catch (SQLException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        }
+        return null;
+    }
+
+    private JSONObject read() {
+        File f = new File(Constants.METADATA_CACHE_FILE);
+        if (!f.exists()) {
+            return new JSONObject();
+        }
+        try ( InputStream is = new FileInputStream(f)) {
+            return new JSONObject(new JSONTokener(is));
+        } catch (IOException | RuntimeException ex) {
+            /* An unreadable snapshot is rebuilt from the dictionary */
+            logger.log(Level.WARNING, "Ignoring unreadable " + Constants.METADATA_CACHE_FILE, ex);
+            return new JSONObject();
+        }
+    }
+
+    /* Write the snapshot through a temporary file , replacing the old snapshot atomically */
+    private void write(JSONObject snapshot) {
+        File tmp = new File(Constants.METADATA_CACHE_FILE + ".tmp");
+        try {
+            try ( FileOutputStream fos = new FileOutputStream(tmp)) {
+                fos.write(snapshot.toString().getBytes(StandardCharsets.UTF_8));
+                fos.getFD().sync();
+            }
+            Files.move(tmp.toPath(), new File(Constants.METADATA_CACHE_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        }
+    }
+}
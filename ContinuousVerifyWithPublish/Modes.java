@@ -6,16 +6,150 @@
  *
  */
 
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 
 public class Modes {
 
     private static Modes instance;
+    private static final Logger logger = Logger.getLogger(Modes.class.getName());
     /* Copy the Bytesfile if hash verification failed ? */
     private boolean COPY_BYTESFILE_FOR_FAILED;
     /* Is the program running in continuous verification mode ? */
     private int CONTINUOUS_VERIFICATION_MODE;
     /* Is the metadata of the program stored locally or on OBP ?  */
     private int METADATA_STORAGE_MODE;
+    /* Verify every row (FULL) or a random sample of rows (SAMPLE) ? */
+    private String VERIFICATION_TYPE;
+    /* Confidence with which a SAMPLE run must detect tampering */
+    private double SAMPLING_CONFIDENCE;
+    /* Fraction of tampered rows a SAMPLE run must be able to detect */
+    private double SAMPLING_TAMPER_RATE;
+    /* Number of sampled rows fetched by a single point lookup query */
+    private int SAMPLING_BATCH_SIZE;
+    /* Record range fingerprints of verified hashes for later re-audits ? */
+    private boolean RECORD_FINGERPRINTS;
+    /* Number of rows in the smallest range a re-audit drills down to */
+    private int REAUDIT_LEAF_SIZE;
+    /* Number of rows covered by one server-side fingerprint query of a re-audit */
+    private int REAUDIT_RANGE_SIZE;
+    /* Stop the whole cycle at the first confirmed hash mismatch ? */
+    private boolean FAIL_FAST;
+    /* After a fail-fast stop , keep verifying the failing chain only ? */
+    private boolean FAIL_FAST_NARROW;
+    /* Check the sequence numbers of every chain before verifying rows ? */
+    private boolean INTEGRITY_PREPASS;
+    /* Read all queries of a cycle as of one SCN captured at the start of the cycle ? */
+    private boolean CONSISTENT_SNAPSHOT;
+    /* Flush the checkpoint of a chain after this many verified rows , 0 to disable */
+    private int CHECKPOINT_FLUSH_ROWS;
+    /* Flush the checkpoint of a chain after this many seconds , 0 to disable */
+    private int CHECKPOINT_FLUSH_SECONDS;
+    /* Make the local log durable after this many records ... */
+    private int LOG_SYNC_RECORDS;
+    /* ... or after this many milliseconds , whichever comes first */
+    private int LOG_SYNC_MILLIS;
+    /* Rotate the local log once it reaches this size */
+    private int LOG_ROTATE_MB;
+    /* Compress rotated local log segments ? */
+    private boolean LOG_COMPRESS;
+    /* Record the stored hash of every verified row in the memory mapped hash index ? */
+    private boolean RECORD_VERIFIED_HASHES;
+    /* Keep the table metadata in a local snapshot and skip the dictionary scan while the table is unchanged ? */
+    private boolean METADATA_CACHE;
+    /* Rows per chain archive segment */
+    private int ARCHIVE_SEGMENT_ROWS;
+    /* Append per-row verification results to the columnar results file ? */
+    private boolean EXPORT_RESULTS;
+
+    /* Read the optional settings from the config file , defaults apply for anything absent */
+    private Modes() {
+        Properties properties = new Properties();
+        InputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream("config.properties");
+            properties.load(inputStream);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Unable to read config.properties , using default modes", ex);
+        } finally {
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException ex) {
+                    logger.log(Level.SEVERE, null, ex);
+                }
+            }
+        }
+        this.VERIFICATION_TYPE = properties.getProperty("verification_type", Constants.VERIFY_FULL).trim().toUpperCase();
+        this.SAMPLING_CONFIDENCE = getDouble(properties, "sampling_confidence", "0.99");
+        this.SAMPLING_TAMPER_RATE = getDouble(properties, "sampling_tamper_rate", "0.001");
+        this.SAMPLING_BATCH_SIZE = getInt(properties, "sampling_batch_size", "100");
+        this.REAUDIT_LEAF_SIZE = getInt(properties, "reaudit_leaf_size", "1024");
+        this.REAUDIT_RANGE_SIZE = getInt(properties, "reaudit_range_size", "65536");
+        this.RECORD_FINGERPRINTS = Boolean.parseBoolean(properties.getProperty("record_fingerprints", "false"));
+        this.FAIL_FAST = Boolean.parseBoolean(properties.getProperty("fail_fast", "false"));
+        this.FAIL_FAST_NARROW = Boolean.parseBoolean(properties.getProperty("fail_fast_narrow", "false"));
+        this.INTEGRITY_PREPASS = Boolean.parseBoolean(properties.getProperty("integrity_prepass", "false"));
+        this.CONSISTENT_SNAPSHOT = Boolean.parseBoolean(properties.getProperty("consistent_snapshot", "false"));
+        this.CHECKPOINT_FLUSH_ROWS = getInt(properties, "checkpoint_flush_rows", "100000");
+        this.CHECKPOINT_FLUSH_SECONDS = getInt(properties, "checkpoint_flush_seconds", "60");
+        this.LOG_SYNC_RECORDS = getInt(properties, "log_sync_records", "1000");
+        this.LOG_SYNC_MILLIS = getInt(properties, "log_sync_millis", "1000");
+        this.LOG_ROTATE_MB = getInt(properties, "log_rotate_mb", "1024");
+        this.LOG_COMPRESS = Boolean.parseBoolean(properties.getProperty("log_compress", "true"));
+        this.RECORD_VERIFIED_HASHES = Boolean.parseBoolean(properties.getProperty("record_verified_hashes", "false"));
+        this.METADATA_CACHE = Boolean.parseBoolean(properties.getProperty("metadata_cache", "true"));
+        this.ARCHIVE_SEGMENT_ROWS = getInt(properties, "archive_segment_rows", "1000000");
+        this.EXPORT_RESULTS = Boolean.parseBoolean(properties.getProperty("export_results", "false"));
+        if (!VERIFICATION_TYPE.equals(Constants.VERIFY_FULL) && !VERIFICATION_TYPE.equals(Constants.VERIFY_SAMPLE)
+                && !VERIFICATION_TYPE.equals(Constants.VERIFY_REAUDIT)) {
+            throw new Error("Unknown verification_type : " + VERIFICATION_TYPE);
+        }
+        if (SAMPLING_CONFIDENCE <= 0 || SAMPLING_CONFIDENCE >= 1 || SAMPLING_TAMPER_RATE <= 0 || SAMPLING_TAMPER_RATE >= 1) {
+            throw new Error("sampling_confidence and sampling_tamper_rate must be between 0 and 1");
+        }
+        if (SAMPLING_BATCH_SIZE <= 0) {
+            throw new Error("sampling_batch_size must be positive");
+        }
+        if (REAUDIT_LEAF_SIZE <= 0 || REAUDIT_RANGE_SIZE < REAUDIT_LEAF_SIZE || REAUDIT_RANGE_SIZE % REAUDIT_LEAF_SIZE != 0) {
+            throw new Error("reaudit_range_size must be a positive multiple of reaudit_leaf_size");
+        }
+        if (CHECKPOINT_FLUSH_ROWS < 0 || CHECKPOINT_FLUSH_SECONDS < 0) {
+            throw new Error("checkpoint_flush_rows and checkpoint_flush_seconds must not be negative");
+        }
+        if (LOG_SYNC_RECORDS <= 0 || LOG_SYNC_MILLIS <= 0) {
+            throw new Error("log_sync_records and log_sync_millis must be positive");
+        }
+        if (LOG_ROTATE_MB <= 0) {
+            throw new Error("log_rotate_mb must be positive");
+        }
+        if (ARCHIVE_SEGMENT_ROWS <= 0) {
+            throw new Error("archive_segment_rows must be positive");
+        }
+    }
+
+    /* Integer setting , a value that is not an integer is reported with its key */
+    private static int getInt(Properties properties, String key, String default_value) {
+        try {
+            return Integer.parseInt(properties.getProperty(key, default_value).trim());
+        } catch (NumberFormatException ex) {
+            throw new Error(key + " must be an integer , got : " + properties.getProperty(key));
+        }
+    }
+
+    /* Numeric setting , a value that is not a number is reported with its key */
+    private static double getDouble(Properties properties, String key, String default_value) {
+        try {
+            return Double.parseDouble(properties.getProperty(key, default_value).trim());
+        } catch (NumberFormatException ex) {
+            throw new Error(key + " must be a number , got : " + properties.getProperty(key));
+        }
+    }
 
     public static Modes getInstance() {
         if (instance == null) {
@@ -47,4 +181,88 @@ public class Modes {
     public void setMETADATA_STORAGE_MODE(int METADATA_STORAGE_MODE) {
         this.METADATA_STORAGE_MODE = METADATA_STORAGE_MODE;
     }
+
+    public String getVERIFICATION_TYPE() {
+        return VERIFICATION_TYPE;
+    }
+
+    public double getSAMPLING_CONFIDENCE() {
+        return SAMPLING_CONFIDENCE;
+    }
+
+    public double getSAMPLING_TAMPER_RATE() {
+        return SAMPLING_TAMPER_RATE;
+    }
+
+    public int getSAMPLING_BATCH_SIZE() {
+        return SAMPLING_BATCH_SIZE;
+    }
+
+    public boolean isRECORD_FINGERPRINTS() {
+        return RECORD_FINGERPRINTS;
+    }
+
+    public int getREAUDIT_LEAF_SIZE() {
+        return REAUDIT_LEAF_SIZE;
+    }
+
+    public int getREAUDIT_RANGE_SIZE() {
+        return REAUDIT_RANGE_SIZE;
+    }
+
+    public boolean isFAIL_FAST() {
+        return FAIL_FAST;
+    }
+
+    public boolean isFAIL_FAST_NARROW() {
+        return FAIL_FAST_NARROW;
+    }
+
+    public boolean isINTEGRITY_PREPASS() {
+        return INTEGRITY_PREPASS;
+    }
+
+    public boolean isCONSISTENT_SNAPSHOT() {
+        return CONSISTENT_SNAPSHOT;
+    }
+
+    public int getCHECKPOINT_FLUSH_ROWS() {
+        return CHECKPOINT_FLUSH_ROWS;
+    }
+
+    public int getCHECKPOINT_FLUSH_SECONDS() {
+        return CHECKPOINT_FLUSH_SECONDS;
+    }
+
+    public int getLOG_SYNC_RECORDS() {
+        return LOG_SYNC_RECORDS;
+    }
+
+    public int getLOG_SYNC_MILLIS() {
+        return LOG_SYNC_MILLIS;
+    }
+
+    public int getLOG_ROTATE_MB() {
+        return LOG_ROTATE_MB;
+    }
+
+    public boolean isLOG_COMPRESS() {
+        return LOG_COMPRESS;
+    }
+
+    public boolean isRECORD_VERIFIED_HASHES() {
+        return RECORD_VERIFIED_HASHES;
+    }
+
+    public boolean isMETADATA_CACHE() {
+        return METADATA_CACHE;
+    }
+
+    public int getARCHIVE_SEGMENT_ROWS() {
+        return ARCHIVE_SEGMENT_ROWS;
+    }
+
+    public boolean isEXPORT_RESULTS() {
+        return EXPORT_RESULTS;
+    }
 }
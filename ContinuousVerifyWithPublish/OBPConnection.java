@@ -6,23 +6,40 @@
  *
  */
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.Reader;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.io.StringReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.net.ssl.HttpsURLConnection;
 import org.json.JSONObject;
 
 
+/**
+ * REST calls to the OBP REST proxy over one shared HTTP client. The client
+ * keeps connections alive and reuses them across calls , and negotiates
+ * HTTP/2 where the REST proxy supports it so concurrent calls are multiplexed
+ * over a single connection. Every call has a synchronous and an asynchronous
+ * form. The number of calls in flight is bounded by OBPLimiter.
+ */
 public class OBPConnection {
 
     private static OBPConnection instance;
     private static final Logger logger = Logger.getLogger(OBPConnection.class.getName());
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_CREATED = 201;
+    private static final int HTTP_ACCEPTED = 202;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int HTTP_SERVER_ERROR = 500;
+    private final HttpClient client;
 
     public static OBPConnection getInstance() {
         if (instance == null) {
@@ -31,170 +48,169 @@ public class OBPConnection {
         return instance;
     }
 
+    private OBPConnection() {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(OBPUtils.getInstance().getRest_connect_timeout()))
+                .build();
+    }
+
     /* Get the transaction ID and Nonce which is required while POSTING to OBP */
     public String[] getTxnIdAndNonce() {
-        String[] txnIdAndNonce = new String[2];
-        HttpsURLConnection con = null;
-        BufferedReader in = null;
+        return txnIdAndNonce(send(request(Constants.OBP_TXNID, null), HTTP_OK));
+    }
+
+    /* Get the transaction ID and Nonce without waiting for the response */
+    public CompletableFuture<String[]> getTxnIdAndNonceAsync() {
+        return sendAsync(request(Constants.OBP_TXNID, null), HTTP_OK).thenApply(this::txnIdAndNonce);
+    }
+
+    /* Publish Some data to the OBP , returns the result or null on error */
+    public JSONObject postData(String jsonBody) {
+        return posted(send(request(Constants.OBP_POST, jsonBody), HTTP_CREATED));
+    }
+
+    /* Publish Some data to the OBP without waiting for the response , completes with the result or null on error */
+    public CompletableFuture<JSONObject> postDataAsync(String jsonBody) {
+        return sendAsync(request(Constants.OBP_POST, jsonBody), HTTP_CREATED).thenApply(this::posted);
+    }
+
+    /* Commit status of a transaction , such as VALID or MVCC_READ_CONFLICT , null while it is not known */
+    public CompletableFuture<String> getTransactionStatusAsync(String txid) {
+        return sendAsync(request(Constants.OBP_POST + "/" + txid, null), HTTP_OK)
+                .thenApply(result -> result == null ? null : result.optString("status", result.optString("validationCode", null)));
+    }
+
+    /* Read some data from the OBP */
+    public JSONObject fetchData(String jsonBody) {
+        return payload(send(request(Constants.OBP_GET, jsonBody), HTTP_OK));
+    }
+
+    /* Read some data from the OBP without waiting for the response */
+    public CompletableFuture<JSONObject> fetchDataAsync(String jsonBody) {
+        return sendAsync(request(Constants.OBP_GET, jsonBody), HTTP_OK).thenApply(this::payload);
+    }
+
+    /* Build a GET request , or a POST request when there is a body */
+    private HttpRequest request(String operation, String jsonBody) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(OBPUtils.getInstance().getBlockchainPlatformURL(operation)))
+                .timeout(Duration.ofMillis(OBPUtils.getInstance().getRest_request_timeout()))
+                .header("Accept", "application/json")
+                /* Basic Authentication */
+                .header("Authorization", "Basic " + new String(AuthHeader.getInstance().getAuthHeaderValue()));
+        if (jsonBody == null) {
+            return builder.GET().build();
+        }
+        return builder.header("Content-Type", "application/json; utf-8")
+                .POST(HttpRequest.BodyPublishers.ofString(jsonBody, StandardCharsets.UTF_8)).build();
+    }
+
+    /* Send a request once the limiter allows it and return the "result" of the response , null on error */
+    private JSONObject send(HttpRequest request, int expected_status) {
+        OBPLimiter limiter = OBPLimiter.getInstance();
+        CompletableFuture<Void> permit = limiter.acquire();
         try {
-            /* Get URL */
-            URL txnIdURL = new URL(OBPUtils.getInstance().getBlockchainPlatformURL(Constants.OBP_TXNID));
-            /* Open Connection */
-            con = (HttpsURLConnection) txnIdURL.openConnection();
-            /* Set request method */
-            con.setRequestMethod("GET");
-            con.setRequestProperty("Accept", "application/json");
-            /* Add Basic Authentication */
-            con.setRequestProperty("Authorization", "Basic " + new String(AuthHeader.getInstance().getAuthHeaderValue()));
-            int status = con.getResponseCode();
-            /* If not 200 , then error */
-            if (status != HttpsURLConnection.HTTP_OK) {
-                try ( Reader streamReader = new InputStreamReader(con.getErrorStream())) {
-                    System.err.println(OBPUtils.getInstance().errorReader(streamReader));
-                }
-            } else {
-                /* Read the response */
-                in = new BufferedReader(
-                        new InputStreamReader(con.getInputStream()));
-                JSONObject JSONResponse = new JSONObject(OBPUtils.getInstance().readResponse(in));
-                JSONObject result = JSONResponse.getJSONObject("result");
-                /*Txn Id and Nonce */
-                txnIdAndNonce[0] = result.getString("txid");
-                txnIdAndNonce[1] = result.getString("nonce");
-            }
-        } catch (MalformedURLException ex) {
+            /* Waiting is bounded like the call itself , so an open circuit fails the call instead of blocking the verifier */
+            permit.get(OBPUtils.getInstance().getRest_request_timeout(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            abandon(limiter, permit);
+            System.err.println("OBP call not sent within " + OBPUtils.getInstance().getRest_request_timeout() + " ms , circuit : " + limiter.getState());
+            return null;
+        } catch (InterruptedException ex) {
+            abandon(limiter, permit);
             logger.log(Level.SEVERE, null, ex);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException ex) {
+            logger.log(Level.SEVERE, null, ex);
+            return null;
+        }
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            limiter.release(System.nanoTime() - start, healthy(response));
+            return result(response, expected_status);
         } catch (IOException ex) {
+            /* Connection failures and timeouts */
+            limiter.release(System.nanoTime() - start, false);
             logger.log(Level.SEVERE, null, ex);
-        } finally {
-            if (in != null) {
-                try {
-                    in.close();
-                } catch (IOException ex) {
-                    logger.log(Level.SEVERE, null, ex);
-                }
-            }
-            if (con != null) {
-                con.disconnect();
+        } catch (InterruptedException ex) {
+            limiter.cancel();
+            logger.log(Level.SEVERE, null, ex);
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /* Send a request asynchronously once the limiter allows it , completes with the "result" of the response or null on error */
+    private CompletableFuture<JSONObject> sendAsync(HttpRequest request, int expected_status) {
+        OBPLimiter limiter = OBPLimiter.getInstance();
+        CompletableFuture<Void> permit = limiter.acquire();
+        int timeout = OBPUtils.getInstance().getRest_request_timeout();
+        /* Waiting is bounded as in send() , so an open circuit fails the call instead of stalling its caller */
+        return permit.copy().orTimeout(timeout, TimeUnit.MILLISECONDS).handle((granted, error) -> {
+            if (error != null) {
+                abandon(limiter, permit);
+                System.err.println("OBP call not sent within " + timeout + " ms , circuit : " + limiter.getState());
+                return CompletableFuture.<JSONObject>completedFuture(null);
             }
+            long start = System.nanoTime();
+            return client.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8))
+                    .whenComplete((response, ex) -> limiter.release(System.nanoTime() - start, ex == null && healthy(response)))
+                    .thenApply(response -> result(response, expected_status))
+                    .exceptionally(ex -> {
+                        logger.log(Level.SEVERE, null, ex);
+                        return null;
+                    });
+        }).thenCompose(response -> response);
+    }
+
+    /* Stop waiting for a permit , returning it if it was granted meanwhile */
+    private static void abandon(OBPLimiter limiter, CompletableFuture<Void> permit) {
+        if (!limiter.abandon(permit)) {
+            limiter.cancel();
+        }
+    }
+
+    /* Overload and server errors count against the health of OBP , other errors are the caller's */
+    private static boolean healthy(HttpResponse<String> response) {
+        return response.statusCode() != HTTP_TOO_MANY_REQUESTS && response.statusCode() < HTTP_SERVER_ERROR;
+    }
+
+    /* "result" of a response , errors are reported and give null */
+    private JSONObject result(HttpResponse<String> response, int expected_status) {
+        /* Transactions submitted without waiting for the commit are accepted rather than created */
+        boolean accepted = expected_status == HTTP_CREATED && response.statusCode() == HTTP_ACCEPTED;
+        if (response.statusCode() != expected_status && !accepted) {
+            System.err.println(OBPUtils.getInstance().errorReader(new StringReader(response.body())));
+            return null;
+        }
+        return new JSONObject(response.body()).getJSONObject("result");
+    }
+
+    private String[] txnIdAndNonce(JSONObject result) {
+        String[] txnIdAndNonce = new String[2];
+        if (result != null) {
+            /*Txn Id and Nonce */
+            txnIdAndNonce[0] = result.getString("txid");
+            txnIdAndNonce[1] = result.getString("nonce");
         }
         return txnIdAndNonce;
     }
 
-    /* Publish Some data to the OBP */
-    public void postData(String jsonBody) {
-        HttpsURLConnection con = null;
-        BufferedReader in = null;
-        try {
-            /* Get URL */
-            URL postURL = new URL(OBPUtils.getInstance().getBlockchainPlatformURL(Constants.OBP_POST));
-            /* Open Connection */
-            con = (HttpsURLConnection) postURL.openConnection();
-            /* Request Method */
-            con.setRequestMethod("POST");
-            /* Request Headers */
-            con.setRequestProperty("Content-Type", "application/json; utf-8");
-            con.setRequestProperty("Accept", "application/json");
-            /* Basic Authentication */
-            con.setRequestProperty("Authorization", "Basic " + new String(AuthHeader.getInstance().getAuthHeaderValue()));
-            /* Expecting Response */
-            con.setDoOutput(true);
-            /* Add Body to request */
-            try ( OutputStream os = con.getOutputStream()) {
-                byte[] body_bytes = jsonBody.getBytes("utf-8");
-                os.write(body_bytes, 0, body_bytes.length);
-            }
-            int status = con.getResponseCode();
-            /* If not 201 , then error */
-            if (status != HttpsURLConnection.HTTP_CREATED) {
-                try ( Reader streamReader = new InputStreamReader(con.getErrorStream())) {
-                    System.err.println(OBPUtils.getInstance().errorReader(streamReader));
-                }
-            } else {
-                /* Read the response */
-                in = new BufferedReader(
-                        new InputStreamReader(con.getInputStream()));
-                JSONObject JSONResponse = new JSONObject(OBPUtils.getInstance().readResponse(in));
-                JSONObject result = JSONResponse.getJSONObject("result");
-                System.out.println("Insert to OBP Sucessful!");
-                /* Print Txn Id */
-                System.out.println("Txn Id : " + result.getString("txid"));
-            }
-        } catch (MalformedURLException ex) {
-            logger.log(Level.SEVERE, null, ex);
-        } catch (IOException ex) {
-            logger.log(Level.SEVERE, null, ex);
-        } catch (NumberFormatException ex) {
-            throw new Error("REST SERVER PORT MUST BE AN INTEGER");
-        } finally {
-            if (in != null) {
-                try {
-                    in.close();
-                } catch (IOException ex) {
-                    logger.log(Level.SEVERE, null, ex);
-                }
-            }
-            if (con != null) {
-                con.disconnect();
-            }
+    private JSONObject posted(JSONObject result) {
+        if (result != null) {
+            System.out.println("Insert to OBP Sucessful!");
+            /* Print Txn Id */
+            System.out.println("Txn Id : " + result.getString("txid"));
         }
+        return result;
     }
 
-    /* Read some data from the OBP */
-    public JSONObject fetchData(String jsonBody) {
-        JSONObject response = null;
-        BufferedReader in = null;
-        HttpsURLConnection con = null;
-        try {
-            URL readURL = new URL(OBPUtils.getInstance().getBlockchainPlatformURL(Constants.OBP_GET));
-            /* Open Connection */
-            con = (HttpsURLConnection) readURL.openConnection();
-            /* Request Method */
-            con.setRequestMethod("POST");
-            /* Request Headers */
-            con.setRequestProperty("Content-Type", "application/json; utf-8");
-            con.setRequestProperty("Accept", "application/json");
-            /* Basic Authentication */
-            con.setRequestProperty("Authorization", "Basic " + new String(AuthHeader.getInstance().getAuthHeaderValue()));
-            con.setDoOutput(true);
-            /* Add Request Body */
-            try ( OutputStream os = con.getOutputStream()) {
-                byte[] body_bytes = jsonBody.getBytes("utf-8");
-                os.write(body_bytes, 0, body_bytes.length);
-            }
-            int status = con.getResponseCode();
-            /* If not 200 , then error */
-            if (status != HttpsURLConnection.HTTP_OK) {
-                try ( Reader streamReader = new InputStreamReader(con.getErrorStream())) {
-                    System.err.println(OBPUtils.getInstance().errorReader(streamReader));
-                }
-            } else {
-                /* Read the response */
-                in = new BufferedReader(
-                        new InputStreamReader(con.getInputStream()));
-                JSONObject JSONResponse = new JSONObject(OBPUtils.getInstance().readResponse(in));
-                /* Build response */
-                JSONObject result = JSONResponse.getJSONObject("result");
-                response = result.get("payload").equals("") ? new JSONObject() : result.getJSONObject("payload");
-            }
-        } catch (MalformedURLException ex) {
-            logger.log(Level.SEVERE, null, ex);
-        } catch (IOException ex) {
-            logger.log(Level.SEVERE, null, ex);
-        } catch (NumberFormatException ex) {
-            System.err.println("REST SERVER PORT MUST BE AN INTEGER");
-        } finally {
-            if (in != null) {
-                try {
-                    in.close();
-                } catch (IOException ex) {
-                    logger.log(Level.SEVERE, null, ex);
-                }
-            }
-            if (con != null) {
-                con.disconnect();
-            }
+    private JSONObject payload(JSONObject result) {
+        if (result == null) {
+            return null;
         }
-        return response;
+        return result.get("payload").equals("") ? new JSONObject() : result.getJSONObject("payload");
     }
 }
@@ -0,0 +1,236 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Adaptive limit on the number of OBP REST calls in flight on the channel.
+ * The limit grows by one per limit's worth of healthy calls and halves when
+ * a call fails , times out or takes more than LATENCY_TOLERANCE times the
+ * lowest recent latency , at most once per observed latency (AIMD). Calls
+ * over the limit wait for a permit.
+ *
+ * After obp_breaker_failures failed calls in a row the circuit opens and no
+ * call is sent for obp_breaker_open_ms. Then a single probe call is let
+ * through , the circuit closes when it succeeds and opens again when it fails.
+ */
+public class OBPLimiter {
+
+    private static OBPLimiter instance;
+    /* Calls slower than this many times the baseline latency count as congestion */
+    private static final double LATENCY_TOLERANCE = 2.0;
+    /* Latency samples after which the baseline is taken again */
+    private static final int BASELINE_WINDOW = 100;
+    public static final String CLOSED = "CLOSED";
+    public static final String OPEN = "OPEN";
+    public static final String HALF_OPEN = "HALF_OPEN";
+    private final int max_limit;
+    private final int breaker_failures;
+    private final long breaker_open_millis;
+    private final Deque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    private final ScheduledExecutorService timer;
+    private double limit;
+    private int in_flight;
+    private String state = CLOSED;
+    private boolean probe_sent;
+    private int consecutive_failures;
+    /* Lowest latency of the previous and of the current window , in nanoseconds */
+    private long baseline_nanos = Long.MAX_VALUE;
+    private long window_min_nanos = Long.MAX_VALUE;
+    private int window_samples;
+    private long last_decrease_nanos;
+
+    public static synchronized OBPLimiter getInstance() {
+        if (instance == null) {
+            instance = new OBPLimiter();
+        }
+        return instance;
+    }
+
+    private OBPLimiter() {
+        this.max_limit = OBPUtils.getInstance().getObp_max_concurrency();
+        this.breaker_failures = OBPUtils.getInstance().getObp_breaker_failures();
+        this.breaker_open_millis = OBPUtils.getInstance().getObp_breaker_open_ms();
+        this.limit = Math.min(4, max_limit);
+        this.last_decrease_nanos = System.nanoTime() - TimeUnit.HOURS.toNanos(1);
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "obp-limiter");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Wait for a permit to send a call.
+     *
+     * @return - completes once the call may be sent
+     */
+    public CompletableFuture<Void> acquire() {
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        synchronized (this) {
+            if (waiters.isEmpty() && mayStart()) {
+                start();
+                permit.complete(null);
+            } else {
+                waiters.add(permit);
+            }
+        }
+        return permit;
+    }
+
+    /**
+     * Return the permit of a finished call.
+     *
+     * @param latency_nanos - Time the call took
+     * @param healthy - false if the call failed , timed out or was rejected for load
+     */
+    public void release(long latency_nanos, boolean healthy) {
+        List<CompletableFuture<Void>> granted;
+        synchronized (this) {
+            in_flight--;
+            if (healthy) {
+                onSuccess(latency_nanos);
+            } else {
+                onFailure(latency_nanos);
+            }
+            granted = grant();
+        }
+        /* Complete outside the lock , completions may send the next call */
+        for (CompletableFuture<Void> permit : granted) {
+            permit.complete(null);
+        }
+    }
+
+    /**
+     * Give up waiting for a permit.
+     *
+     * @param permit - Permit returned by acquire()
+     * @return - false if the permit was granted meanwhile and must be
+     * returned with cancel()
+     */
+    public synchronized boolean abandon(CompletableFuture<Void> permit) {
+        return waiters.remove(permit);
+    }
+
+    /* Return the permit of a call that was not sent , without a sample */
+    public void cancel() {
+        List<CompletableFuture<Void>> granted;
+        synchronized (this) {
+            in_flight--;
+            if (HALF_OPEN.equals(state)) {
+                probe_sent = false;
+            }
+            granted = grant();
+        }
+        for (CompletableFuture<Void> permit : granted) {
+            permit.complete(null);
+        }
+    }
+
+    /* Current limit on calls in flight */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getIn_flight() {
+        return in_flight;
+    }
+
+    /* CLOSED , OPEN or HALF_OPEN */
+    public synchronized String getState() {
+        return state;
+    }
+
+    private boolean mayStart() {
+        if (CLOSED.equals(state)) {
+            return in_flight < (int) limit;
+        }
+        return HALF_OPEN.equals(state) && !probe_sent && in_flight == 0;
+    }
+
+    private void start() {
+        in_flight++;
+        if (HALF_OPEN.equals(state)) {
+            probe_sent = true;
+        }
+    }
+
+    private List<CompletableFuture<Void>> grant() {
+        List<CompletableFuture<Void>> granted = new ArrayList<>();
+        while (!waiters.isEmpty() && mayStart()) {
+            start();
+            granted.add(waiters.poll());
+        }
+        return granted;
+    }
+
+    private void onSuccess(long latency_nanos) {
+        consecutive_failures = 0;
+        if (HALF_OPEN.equals(state)) {
+            state = CLOSED;
+            limit = 1;
+            System.out.println("OBP is healthy again , resuming publishing");
+            return;
+        }
+        window_min_nanos = Math.min(window_min_nanos, latency_nanos);
+        if (++window_samples == BASELINE_WINDOW) {
+            baseline_nanos = window_min_nanos;
+            window_min_nanos = Long.MAX_VALUE;
+            window_samples = 0;
+        }
+        long baseline = Math.min(baseline_nanos, window_min_nanos);
+        if (latency_nanos > LATENCY_TOLERANCE * baseline) {
+            decrease(latency_nanos);
+        } else {
+            limit = Math.min(max_limit, limit + 1 / limit);
+        }
+    }
+
+    private void onFailure(long latency_nanos) {
+        consecutive_failures++;
+        if (HALF_OPEN.equals(state) || (CLOSED.equals(state) && consecutive_failures >= breaker_failures)) {
+            open();
+            return;
+        }
+        decrease(latency_nanos);
+    }
+
+    /* Halve the limit , once per latency so one congested period does not collapse it */
+    private void decrease(long latency_nanos) {
+        long now = System.nanoTime();
+        if (now - last_decrease_nanos >= latency_nanos) {
+            limit = Math.max(1, limit / 2);
+            last_decrease_nanos = now;
+        }
+    }
+
+    private void open() {
+        state = OPEN;
+        limit = 1;
+        System.err.println("OBP is unhealthy after " + consecutive_failures + " failed calls , pausing publishing for " + breaker_open_millis + " ms");
+        timer.schedule(() -> {
+            List<CompletableFuture<Void>> granted;
+            synchronized (this) {
+                state = HALF_OPEN;
+                probe_sent = false;
+                granted = grant();
+            }
+            for (CompletableFuture<Void> permit : granted) {
+                permit.complete(null);
+            }
+        }, breaker_open_millis, TimeUnit.MILLISECONDS);
+    }
+}
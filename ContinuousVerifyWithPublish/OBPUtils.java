@@ -28,6 +28,29 @@ public class OBPUtils {
     private final Integer rest_server_port;
     private final String channel_id;
     private final String chaincode_name;
+    private final int rest_connect_timeout;
+    private final int rest_request_timeout;
+    private final int txn_id_pool_size;
+    private final int txn_id_ttl_seconds;
+    private final int obp_batch_size;
+    private final int obp_batch_millis;
+    private final boolean publish_outbox;
+    private final int outbox_entries;
+    private final int outbox_retry_min_ms;
+    private final int outbox_retry_max_ms;
+    private final int outbox_max_attempts;
+    private final int obp_max_concurrency;
+    private final int obp_breaker_failures;
+    private final int obp_breaker_open_ms;
+    private final boolean obp_async_submit;
+    private final int obp_commit_check_ms;
+    private final int obp_commit_timeout_ms;
+    private final boolean obp_anchor_tips;
+    private final int obp_anchor_seconds;
+    private final boolean obp_merkle_batches;
+    private final int obp_merkle_batch_rows;
+    private final boolean obp_signed_digest;
+    private final String obp_digest_certificate_id;
     private static final Logger logger = Logger.getLogger(OBPUtils.class.getName());
 
     public static OBPUtils getInstance() {
@@ -66,6 +89,69 @@ public class OBPUtils {
         }
         this.channel_id = properties.getProperty("channel_id");
         this.chaincode_name = properties.getProperty("chaincode_name");
+        try {
+            this.rest_connect_timeout = Integer.parseInt(properties.getProperty("rest_connect_timeout_ms", "10000"));
+            this.rest_request_timeout = Integer.parseInt(properties.getProperty("rest_request_timeout_ms", "60000"));
+            this.txn_id_pool_size = Integer.parseInt(properties.getProperty("txn_id_pool_size", "8"));
+            this.txn_id_ttl_seconds = Integer.parseInt(properties.getProperty("txn_id_ttl_seconds", "300"));
+            this.obp_batch_size = Integer.parseInt(properties.getProperty("obp_batch_size", "1"));
+            this.obp_batch_millis = Integer.parseInt(properties.getProperty("obp_batch_millis", "2000"));
+            this.outbox_entries = Integer.parseInt(properties.getProperty("outbox_entries", "262144"));
+            this.outbox_retry_min_ms = Integer.parseInt(properties.getProperty("outbox_retry_min_ms", "500"));
+            this.outbox_retry_max_ms = Integer.parseInt(properties.getProperty("outbox_retry_max_ms", "60000"));
+            this.outbox_max_attempts = Integer.parseInt(properties.getProperty("outbox_max_attempts", "10"));
+            this.obp_max_concurrency = Integer.parseInt(properties.getProperty("obp_max_concurrency", "32"));
+            this.obp_breaker_failures = Integer.parseInt(properties.getProperty("obp_breaker_failures", "5"));
+            this.obp_breaker_open_ms = Integer.parseInt(properties.getProperty("obp_breaker_open_ms", "30000"));
+            this.obp_commit_check_ms = Integer.parseInt(properties.getProperty("obp_commit_check_ms", "3000"));
+            this.obp_commit_timeout_ms = Integer.parseInt(properties.getProperty("obp_commit_timeout_ms", "60000"));
+            this.obp_anchor_seconds = Integer.parseInt(properties.getProperty("obp_anchor_seconds", "300"));
+            this.obp_merkle_batch_rows = Integer.parseInt(properties.getProperty("obp_merkle_batch_rows", "100000"));
+        } catch (NumberFormatException ex) {
+            throw new Error("REST Server timeouts , transaction id pool , batch , outbox , concurrency , commit and anchor settings should be integers!");
+        }
+        this.obp_anchor_tips = Boolean.parseBoolean(properties.getProperty("obp_anchor_tips", "false"));
+        this.obp_merkle_batches = Boolean.parseBoolean(properties.getProperty("obp_merkle_batches", "false"));
+        this.obp_signed_digest = Boolean.parseBoolean(properties.getProperty("obp_signed_digest", "false"));
+        this.obp_digest_certificate_id = properties.getProperty("obp_digest_certificate_id", "").trim();
+        this.obp_async_submit = Boolean.parseBoolean(properties.getProperty("obp_async_submit", "false"));
+        this.publish_outbox = Boolean.parseBoolean(properties.getProperty("publish_outbox", "false"));
+        if (rest_connect_timeout <= 0 || rest_request_timeout <= 0) {
+            throw new Error("REST Server timeouts should be positive!");
+        }
+        if (txn_id_pool_size < 0 || txn_id_ttl_seconds <= 0) {
+            throw new Error("txn_id_pool_size must not be negative and txn_id_ttl_seconds must be positive!");
+        }
+        if (obp_batch_size < 0 || obp_batch_millis <= 0) {
+            throw new Error("obp_batch_size must not be negative and obp_batch_millis must be positive!");
+        }
+        if (outbox_entries <= 0 || (long) outbox_entries * PublishOutbox.ENTRY_SIZE > Integer.MAX_VALUE) {
+            throw new Error("outbox_entries must be positive and the outbox at most 2GB!");
+        }
+        if (outbox_retry_min_ms <= 0 || outbox_retry_max_ms < outbox_retry_min_ms) {
+            throw new Error("outbox_retry_min_ms must be positive and not above outbox_retry_max_ms!");
+        }
+        if (outbox_max_attempts <= 0) {
+            throw new Error("outbox_max_attempts must be positive!");
+        }
+        if (obp_max_concurrency <= 0 || obp_breaker_failures <= 0 || obp_breaker_open_ms <= 0) {
+            throw new Error("obp_max_concurrency , obp_breaker_failures and obp_breaker_open_ms must be positive!");
+        }
+        if (obp_commit_check_ms <= 0 || obp_commit_timeout_ms < obp_commit_check_ms) {
+            throw new Error("obp_commit_check_ms must be positive and not above obp_commit_timeout_ms!");
+        }
+        if (obp_anchor_seconds <= 0) {
+            throw new Error("obp_anchor_seconds must be positive!");
+        }
+        if (obp_merkle_batch_rows <= 0) {
+            throw new Error("obp_merkle_batch_rows must be positive!");
+        }
+        if ((obp_anchor_tips ? 1 : 0) + (obp_merkle_batches ? 1 : 0) + (obp_signed_digest ? 1 : 0) > 1) {
+            throw new Error("Only one of obp_anchor_tips , obp_merkle_batches and obp_signed_digest can be enabled!");
+        }
+        if (!obp_digest_certificate_id.isEmpty() && Utils.getUtils().hexToBytes(obp_digest_certificate_id).length == 0) {
+            throw new Error("obp_digest_certificate_id must be a hex certificate id!");
+        }
     }
 
     public String getRest_server_url() {
@@ -84,6 +170,98 @@ public class OBPUtils {
         return chaincode_name;
     }
 
+    public int getRest_connect_timeout() {
+        return rest_connect_timeout;
+    }
+
+    public int getRest_request_timeout() {
+        return rest_request_timeout;
+    }
+
+    public int getTxn_id_pool_size() {
+        return txn_id_pool_size;
+    }
+
+    public int getTxn_id_ttl_seconds() {
+        return txn_id_ttl_seconds;
+    }
+
+    public int getObp_batch_size() {
+        return obp_batch_size;
+    }
+
+    public int getObp_batch_millis() {
+        return obp_batch_millis;
+    }
+
+    public boolean isPublish_outbox() {
+        return publish_outbox;
+    }
+
+    public int getOutbox_entries() {
+        return outbox_entries;
+    }
+
+    public int getOutbox_retry_min_ms() {
+        return outbox_retry_min_ms;
+    }
+
+    public int getOutbox_retry_max_ms() {
+        return outbox_retry_max_ms;
+    }
+
+    public int getOutbox_max_attempts() {
+        return outbox_max_attempts;
+    }
+
+    public int getObp_max_concurrency() {
+        return obp_max_concurrency;
+    }
+
+    public int getObp_breaker_failures() {
+        return obp_breaker_failures;
+    }
+
+    public int getObp_breaker_open_ms() {
+        return obp_breaker_open_ms;
+    }
+
+    public boolean isObp_async_submit() {
+        return obp_async_submit;
+    }
+
+    public int getObp_commit_check_ms() {
+        return obp_commit_check_ms;
+    }
+
+    public int getObp_commit_timeout_ms() {
+        return obp_commit_timeout_ms;
+    }
+
+    public boolean isObp_anchor_tips() {
+        return obp_anchor_tips;
+    }
+
+    public int getObp_anchor_seconds() {
+        return obp_anchor_seconds;
+    }
+
+    public boolean isObp_merkle_batches() {
+        return obp_merkle_batches;
+    }
+
+    public int getObp_merkle_batch_rows() {
+        return obp_merkle_batch_rows;
+    }
+
+    public boolean isObp_signed_digest() {
+        return obp_signed_digest;
+    }
+
+    public String getObp_digest_certificate_id() {
+        return obp_digest_certificate_id;
+    }
+
     public String getBlockchainPlatformURL(String operation) {
         return "https://" + getRest_server_url() + ":" + getRest_server_port()
                 + "/restproxy/api/v2/channels/" + getChannel_id() + "/" + operation;
@@ -134,13 +312,14 @@ public class OBPUtils {
         /* Build Body for Request */
         JSONObject body = new JSONObject();
         if (mode.equals(Constants.OBP_POST)) {
-            /* Get Txn Id and Nonce */
-            String[] txnIdAndNonce = OBPConnection.getInstance().getTxnIdAndNonce();
+            /* Get Txn Id and Nonce , prefetched unless the pool is disabled */
+            String[] txnIdAndNonce = txn_id_pool_size > 0 ? TxnIdPool.getInstance().take() : OBPConnection.getInstance().getTxnIdAndNonce();
             /* Txn ID */
             body.put("txid", txnIdAndNonce[0]);
             /* Nonce */
             body.put("nonce", txnIdAndNonce[1]);
-            body.put("sync", true);
+            /* Wait for the commit unless CommitTracker confirms it later */
+            body.put("sync", !obp_async_submit);
         }
         /* Chaincode to invoke */
         body.put("chaincode", chaincode_name);
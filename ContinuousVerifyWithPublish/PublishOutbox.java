@@ -0,0 +1,308 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+
+/**
+ * Durable outbox between verification and publishing to OBP , one per table.
+ * Verified rows are appended to a memory mapped ring of fixed-width entries
+ * and a background publisher drains the ring in batches with storeLogBatch ,
+ * retrying with exponential backoff while OBP is unavailable. Entries are
+ * numbered from 1 , entry n lives in slot n % capacity , and the number of the
+ * last entry OBP accepted is kept in the header. A restarted process resumes
+ * publishing after that entry.
+ *
+ * File : "<schema>_<table>_<guid>.outbox" , big endian :
+ * header : magic(4) version(4) capacity(8) acked(8) , padded to HEADER_SIZE
+ * entry  : entry_no(8) instance_id(4) chain_id(4) sequence_no(8) result(1)
+ *          hex_case(1) reserved(2) crc32(4) hash(64) expected_hash(64)
+ * Hashes are stored as bytes and restored in their original case , hex_case
+ * has bit 0 set for a lower case hash and bit 1 for a lower case expected hash.
+ *
+ * A batch OBP keeps refusing while it answers other requests , for instance
+ * one the chaincode rejects , is given up after outbox_max_attempts attempts.
+ * Its rows are appended to "<schema>_<table>_<guid>.outbox.rejected" and
+ * publishing moves on , so the ring does not fill up behind it.
+ */
+public class PublishOutbox {
+
+    private static final Logger logger = Logger.getLogger(PublishOutbox.class.getName());
+    private static final Map<String, PublishOutbox> outboxes = new ConcurrentHashMap<>();
+    public static final int MAGIC = 0x42434F42;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 4096;
+    public static final int ENTRY_SIZE = 160;
+    private static final int ENTRY_CASE = 25;
+    private static final int ENTRY_CRC = 28;
+    private static final int HASH_SIZE = 64;
+    private final String schema_name;
+    private final String table_name;
+    private final String path;
+    private final FileChannel channel;
+    private final MappedByteBuffer ring;
+    private final long capacity;
+    /* last entry accepted by OBP */
+    private long acked;
+    /* number of the next entry */
+    private long next;
+
+    /**
+     * Outbox of a table , opened and recovered on first use.
+     *
+     * @param schema_name - Schema name
+     * @param table_name - Table name
+     * @return - Outbox of the table
+     */
+    public static PublishOutbox getInstance(String schema_name, String table_name) {
+        return outboxes.computeIfAbsent(schema_name + "." + table_name, k -> new PublishOutbox(schema_name, table_name));
+    }
+
+    private PublishOutbox(String schema_name, String table_name) {
+        this.schema_name = schema_name;
+        this.table_name = table_name;
+        this.path = Utils.getUtils().cleanPath(schema_name + "_" + table_name + "_" + DBUtils.getDBUtils().getDbGUID() + ".outbox");
+        try {
+            channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ByteBuffer header = ByteBuffer.allocate(24);
+            if (channel.size() >= HEADER_SIZE) {
+                channel.read(header, 0);
+                if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                    throw new Error("Not a publish outbox : " + path);
+                }
+                /* An existing outbox keeps its capacity */
+                capacity = header.getLong(8);
+                acked = header.getLong(16);
+            } else {
+                capacity = OBPUtils.getInstance().getOutbox_entries();
+                acked = 0;
+                header.putInt(MAGIC).putInt(VERSION).putLong(capacity).putLong(acked).flip();
+                channel.write(header, 0);
+                channel.force(false);
+            }
+            ring = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE, capacity * ENTRY_SIZE);
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, null, ex);
+            throw new Error("Unable to open the publish outbox " + path);
+        }
+        /* Entries written after the last acknowledged one are still to be published */
+        next = acked + 1;
+        while (next - acked <= capacity && isEntry(next)) {
+            next++;
+        }
+        if (next - acked > 1) {
+            System.out.println("Resuming publishing of " + (next - acked - 1) + " verified rows from " + path);
+        }
+        Thread publisher = new Thread(this::drain, "publish-outbox-" + schema_name + "." + table_name);
+        publisher.setDaemon(true);
+        publisher.start();
+    }
+
+    /**
+     * Append the log of a verified row. Only waits when the ring is full of
+     * entries OBP has not accepted yet.
+     *
+     * @param log - Log of the row
+     */
+    public synchronized void enqueue(LogBuilder log) {
+        boolean waiting = false;
+        while (next - acked > capacity) {
+            if (!waiting) {
+                System.err.println("Publish outbox full , waiting for OBP : " + path);
+                waiting = true;
+            }
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new Error("Interrupted while waiting for the publish outbox");
+            }
+        }
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+        entry.putLong(next).putInt(log.getInstance_id()).putInt(log.getChain_id()).putLong(log.getSeq_no());
+        entry.put((byte) (log.isResult() ? 1 : 0));
+        entry.put((byte) ((isLowerCase(log.getHash()) ? 1 : 0) | (isLowerCase(log.getExpected_hash()) ? 2 : 0)));
+        entry.position(32);
+        entry.put(hashBytes(log.getHash()));
+        entry.put(hashBytes(log.getExpected_hash()));
+        CRC32 crc = new CRC32();
+        crc.update(entry.array(), 0, ENTRY_CRC);
+        crc.update(entry.array(), ENTRY_CRC + 4, ENTRY_SIZE - ENTRY_CRC - 4);
+        entry.putInt(ENTRY_CRC, (int) crc.getValue());
+        int offset = slot(next);
+        for (int i = 0; i < ENTRY_SIZE; i++) {
+            ring.put(offset + i, entry.get(i));
+        }
+        next++;
+        notifyAll();
+    }
+
+    /* Make every appended entry durable */
+    public synchronized void sync() {
+        ring.force();
+    }
+
+    /* Publisher loop : publish the oldest entries , backing off while OBP fails */
+    private void drain() {
+        long min_backoff = OBPUtils.getInstance().getOutbox_retry_min_ms();
+        long max_backoff = OBPUtils.getInstance().getOutbox_retry_max_ms();
+        int batch_size = Math.max(1, OBPUtils.getInstance().getObp_batch_size());
+        int max_attempts = OBPUtils.getInstance().getOutbox_max_attempts();
+        long backoff = min_backoff;
+        /* Failed attempts at the oldest batch while OBP was answering */
+        int attempts = 0;
+        while (true) {
+            List<LogBuilder> batch = new ArrayList<>();
+            long last;
+            synchronized (this) {
+                while (acked + 1 >= next) {
+                    try {
+                        wait();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                }
+                last = Math.min(next - 1, acked + batch_size);
+                for (long entry_no = acked + 1; entry_no <= last; entry_no++) {
+                    batch.add(readEntry(entry_no));
+                }
+            }
+            boolean published;
+            try {
+                /* Acknowledged only once committed , so a restart publishes a batch lost before its commit again */
+                published = LogBatcher.publishBatch(batch).join();
+            } catch (RuntimeException ex) {
+                logger.log(Level.SEVERE, null, ex);
+                published = false;
+            }
+            if (!published && OBPLimiter.CLOSED.equals(OBPLimiter.getInstance().getState())) {
+                attempts++;
+            }
+            if (!published && attempts >= max_attempts) {
+                reject(batch);
+                published = true;
+            }
+            if (published) {
+                acknowledge(last);
+                backoff = min_backoff;
+                attempts = 0;
+            } else {
+                System.err.println("Publishing to OBP failed , retrying in " + backoff + " ms");
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                backoff = Math.min(max_backoff, 2 * backoff);
+            }
+        }
+    }
+
+    /* Keep the rows of a batch OBP rejects aside so publishing can move on */
+    private void reject(List<LogBuilder> batch) {
+        String rejected = path + ".rejected";
+        try ( PrintWriter out = new PrintWriter(new FileWriter(rejected, true))) {
+            for (LogBuilder log : batch) {
+                out.println(log.getInstance_id() + "," + log.getChain_id() + "," + log.getSeq_no() + "," + log.isResult() + "," + log.getHash()
+                        + "," + (log.isResult() ? "" : log.getExpected_hash()));
+            }
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, null, ex);
+            throw new Error("Unable to write the rejected rows to " + rejected);
+        }
+        LogBuilder first = batch.get(0);
+        System.err.println("OBP rejected a batch of " + batch.size() + " rows starting at instance id : " + first.getInstance_id() + " , chain id : "
+                + first.getChain_id() + " , sequence no : " + first.getSeq_no() + " , the rows were written to " + rejected);
+    }
+
+    /* Record that OBP accepted every entry up to entry_no */
+    private void acknowledge(long entry_no) {
+        ByteBuffer header = ByteBuffer.allocate(8);
+        header.putLong(entry_no).flip();
+        try {
+            channel.write(header, 16);
+            channel.force(false);
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        }
+        synchronized (this) {
+            acked = entry_no;
+            notifyAll();
+        }
+    }
+
+    private LogBuilder readEntry(long entry_no) {
+        int offset = slot(entry_no);
+        int instance_id = ring.getInt(offset + 8);
+        int chain_id = ring.getInt(offset + 12);
+        int seq_no = (int) ring.getLong(offset + 16);
+        byte hex_case = ring.get(offset + ENTRY_CASE);
+        String hash = hexAt(offset + 32, (hex_case & 1) != 0);
+        if (ring.get(offset + 24) == 1) {
+            return new LogBuilder(schema_name, table_name, instance_id, chain_id, seq_no, hash);
+        }
+        return new LogBuilder(schema_name, table_name, instance_id, chain_id, seq_no, hash, hexAt(offset + 32 + HASH_SIZE, (hex_case & 2) != 0));
+    }
+
+    /* Does the slot of entry_no hold that entry , completely written ? */
+    private boolean isEntry(long entry_no) {
+        int offset = slot(entry_no);
+        if (ring.getLong(offset) != entry_no) {
+            return false;
+        }
+        byte[] entry = new byte[ENTRY_SIZE];
+        for (int i = 0; i < ENTRY_SIZE; i++) {
+            entry[i] = ring.get(offset + i);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(entry, 0, ENTRY_CRC);
+        crc.update(entry, ENTRY_CRC + 4, ENTRY_SIZE - ENTRY_CRC - 4);
+        return (int) crc.getValue() == ByteBuffer.wrap(entry).getInt(ENTRY_CRC);
+    }
+
+    private int slot(long entry_no) {
+        return (int) (entry_no % capacity) * ENTRY_SIZE;
+    }
+
+    private String hexAt(int offset, boolean lower_case) {
+        byte[] bytes = new byte[HASH_SIZE];
+        for (int i = 0; i < HASH_SIZE; i++) {
+            bytes[i] = ring.get(offset + i);
+        }
+        String hex = Utils.getUtils().bytesToHex(bytes);
+        return lower_case ? hex.toLowerCase() : hex;
+    }
+
+    /* Is a hex string written in lower case ? */
+    private static boolean isLowerCase(String hex) {
+        return hex != null && !hex.equals(hex.toUpperCase());
+    }
+
+    private static byte[] hashBytes(String hash) {
+        byte[] bytes = new byte[HASH_SIZE];
+        if (hash != null) {
+            byte[] hex = Utils.getUtils().hexToBytes(hash);
+            System.arraycopy(hex, 0, bytes, 0, Math.min(HASH_SIZE, hex.length));
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,116 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+
+/**
+ * Durable "published up to" sequence number of every chain , kept in its own
+ * CheckPointStore file apart from the verification checkpoints. Rows at or
+ * below the watermark of their chain that verify successfully are not
+ * published again , so rows verified again after a restart between publishing
+ * and the checkpoint do not cost ledger transactions. Rows that fail are
+ * always published. A chain's watermark only moves past a row once
+ * OBP accepted , or with obp_async_submit committed , the log of that row and
+ * of every row of the chain published before it.
+ */
+public class PublishWatermark {
+
+    private static PublishWatermark instance;
+    /* "<table_key>_<instance_id>_<chain_id>" -> published up to sequence_no */
+    private final Map<String, Long> watermarks = new HashMap<>();
+    /* "<table_key>_<instance_id>_<chain_id>" -> sequence numbers published but not confirmed yet */
+    private final Map<String, TreeSet<Long>> outstanding = new HashMap<>();
+    /* "<table_key>_<instance_id>_<chain_id>" -> highest confirmed sequence_no */
+    private final Map<String, Long> confirmed = new HashMap<>();
+    /* Tables whose watermarks were loaded */
+    private final Map<String, Long> tables = new HashMap<>();
+
+    public static synchronized PublishWatermark getInstance() {
+        if (instance == null) {
+            instance = new PublishWatermark();
+        }
+        return instance;
+    }
+
+    private PublishWatermark() {
+    }
+
+    /**
+     * Claim a row for publishing.
+     *
+     * @param log - Log of the row
+     * @return - false if the row verified successfully at or below the
+     * watermark of its chain and must not be published again
+     */
+    public synchronized boolean claim(LogBuilder log) {
+        String key = key(log);
+        Long watermark = watermarks.get(key);
+        if (watermark != null && log.getSeq_no() <= watermark) {
+            /* A row that fails now is published again , the chaincode drops identical logs */
+            return !log.isResult();
+        }
+        outstanding.computeIfAbsent(key, k -> new TreeSet<>()).add((long) log.getSeq_no());
+        return true;
+    }
+
+    /**
+     * Record that the log of a claimed row was published , or failed to.
+     *
+     * @param log - Log of the row
+     * @param published - was the log accepted , or committed
+     */
+    public synchronized void published(LogBuilder log, boolean published) {
+        if (!published) {
+            /* Leave the row outstanding so the watermark stays below it */
+            return;
+        }
+        String key = key(log);
+        TreeSet<Long> pending = outstanding.get(key);
+        if (pending != null) {
+            pending.remove((long) log.getSeq_no());
+        }
+        confirmed.merge(key, (long) log.getSeq_no(), Math::max);
+        /* Up to the row before the oldest row still outstanding */
+        long watermark = confirmed.get(key);
+        if (pending != null && !pending.isEmpty()) {
+            watermark = Math.min(watermark, pending.first() - 1);
+        }
+        Long current = watermarks.get(key);
+        if (current == null || watermark > current) {
+            watermarks.put(key, watermark);
+            CheckPointStore.getWatermarkInstance().update(tableKey(log), log.getInstance_id(), log.getChain_id(), watermark, 0, null);
+        }
+    }
+
+    /* Make the watermarks durable */
+    public void force() {
+        CheckPointStore.getWatermarkInstance().force();
+    }
+
+    private String key(LogBuilder log) {
+        return tableKey(log) + "_" + log.getInstance_id() + "_" + log.getChain_id();
+    }
+
+    /* Table key of the log , loading the watermarks of its table on first use */
+    private long tableKey(LogBuilder log) {
+        String table = log.getSchema_name() + "." + log.getTable_name();
+        Long table_key = tables.get(table);
+        if (table_key == null) {
+            table_key = CheckPointStore.getTableKey(log.getSchema_name(), log.getTable_name(), DBUtils.getDBUtils().getDbGUID());
+            tables.put(table, table_key);
+            Map<String, long[]> stored = CheckPointStore.getWatermarkInstance().load(table_key, new HashMap<>());
+            for (Map.Entry<String, long[]> entry : stored.entrySet()) {
+                watermarks.put(table_key + "_" + entry.getKey(), entry.getValue()[0]);
+            }
+        }
+        return table_key;
+    }
+}
@@ -0,0 +1,206 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import oracle.sql.RAW;
+
+
+/**
+ * Fingerprints of verified row hashes over fixed sequence ranges (leaves) of
+ * each chain. A fingerprint is the row count together with the sum , modulo
+ * 2^63 , of the first 7 bytes of SHA-256(ORABCTAB_HASH$) of every row in the
+ * range. The sum is additive , so the fingerprint of any run of leaves is the
+ * sum of the leaf fingerprints , and the database can compute the same value
+ * server-side with STANDARD_HASH.
+ */
+public class RangeFingerprint {
+
+    private static RangeFingerprint instance;
+    private static final Logger logger = Logger.getLogger(RangeFingerprint.class.getName());
+    /* Server-side fingerprint term of a single row , must match fingerprintOf() */
+    public static final String SQL_FINGERPRINT = "count(*) , mod(sum(to_number(rawtohex(utl_raw.substr("
+            + "standard_hash(ORABCTAB_HASH$, 'SHA256'), 1, 7)), 'XXXXXXXXXXXXXX')), power(2, 63))";
+    /* "<instance_id>_<chain_id>" -> leaf index -> {count , sum} */
+    private final Map<String, TreeMap<Long, long[]>> leaves = new HashMap<>();
+    /* "<instance_id>_<chain_id>" -> highest sequence number accounted for */
+    private final Map<String, Long> high = new HashMap<>();
+    private final int leaf_size;
+    private String file;
+
+    private RangeFingerprint() {
+        leaf_size = Modes.getInstance().getREAUDIT_LEAF_SIZE();
+    }
+
+    public static RangeFingerprint getInstance() {
+        if (instance == null) {
+            instance = new RangeFingerprint();
+        }
+        return instance;
+    }
+
+    /* Load the fingerprints recorded for this table */
+    public void initFingerprints(String schema, String table) {
+        if (file != null) {
+            return;
+        }
+        String db_guid = DBUtils.getDBUtils().getDbGUID();
+        file = Utils.getUtils().cleanPath(schema + "_" + table + "_" + db_guid + ".fpr");
+        File f = new File(file);
+        if (!f.exists()) {
+            return;
+        }
+        try ( DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+            if (in.readInt() != leaf_size) {
+                /* Fingerprints of a different leaf size cannot be compared , start again */
+                System.err.println("Ignoring fingerprints recorded with a different reaudit_leaf_size");
+                return;
+            }
+            int chains = in.readInt();
+            for (int i = 0; i < chains; i++) {
+                String key = in.readUTF();
+                high.put(key, in.readLong());
+                int count = in.readInt();
+                TreeMap<Long, long[]> chain_leaves = new TreeMap<>();
+                for (int j = 0; j < count; j++) {
+                    chain_leaves.put(in.readLong(), new long[]{in.readLong(), in.readLong()});
+                }
+                leaves.put(key, chain_leaves);
+            }
+        } catch (EOFException ex) {
+            throw new Error("Fingerprint file is truncated : " + file);
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /* Write all fingerprints through a temporary file , replacing the old file atomically */
+    public void exportFingerprints() {
+        if (file == null) {
+            return;
+        }
+        File tmp = new File(file + ".tmp");
+        try {
+            try ( FileOutputStream fos = new FileOutputStream(tmp);  DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+                out.writeInt(leaf_size);
+                out.writeInt(leaves.size());
+                for (Map.Entry<String, TreeMap<Long, long[]>> chain : leaves.entrySet()) {
+                    out.writeUTF(chain.getKey());
+                    out.writeLong(high.get(chain.getKey()));
+                    out.writeInt(chain.getValue().size());
+                    for (Map.Entry<Long, long[]> leaf : chain.getValue().entrySet()) {
+                        out.writeLong(leaf.getKey());
+                        out.writeLong(leaf.getValue()[0]);
+                        out.writeLong(leaf.getValue()[1]);
+                    }
+                }
+                out.flush();
+                fos.getFD().sync();
+            }
+            Files.move(tmp.toPath(), new File(file).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Account for a row seen by the verifier. Only verified rows are added to
+     * the fingerprint , so ranges holding failed rows never match and are
+     * re-verified on every re-audit. Rows at or below the highest sequence
+     * already accounted for are ignored , which keeps re-verification of
+     * previously seen rows from counting them twice.
+     *
+     * @param instance_id - Instance id
+     * @param chain_id - Chain id
+     * @param seq_no - Sequence number
+     * @param hash - Stored hash of the row
+     * @param verified - Did the row pass verification
+     */
+    public void addRow(int instance_id, int chain_id, long seq_no, String hash, boolean verified) {
+        String key = instance_id + "_" + chain_id;
+        Long chain_high = high.get(key);
+        if (chain_high != null && seq_no <= chain_high) {
+            return;
+        }
+        high.put(key, seq_no);
+        TreeMap<Long, long[]> chain_leaves = leaves.computeIfAbsent(key, k -> new TreeMap<>());
+        long[] leaf = chain_leaves.computeIfAbsent(getLeaf(seq_no), k -> new long[2]);
+        if (verified) {
+            leaf[0]++;
+            leaf[1] = (leaf[1] + fingerprintOf(hash)) & Long.MAX_VALUE;
+        }
+    }
+
+    /* Leaf index of a sequence number , leaf k covers sequences k * leaf_size + 1 to (k + 1) * leaf_size */
+    public long getLeaf(long seq_no) {
+        return (seq_no - 1) / leaf_size;
+    }
+
+    public int getLeaf_size() {
+        return leaf_size;
+    }
+
+    /* Highest sequence number accounted for in a chain , 0 if none */
+    public long getHigh(int instance_id, int chain_id) {
+        Long chain_high = high.get(instance_id + "_" + chain_id);
+        return chain_high == null ? 0 : chain_high;
+    }
+
+    /* Chains with recorded fingerprints , as "<instance_id>_<chain_id>" */
+    public Iterable<String> getChains() {
+        return leaves.keySet();
+    }
+
+    /**
+     * Expected fingerprint of the leaves first_leaf to last_leaf (inclusive).
+     *
+     * @return - {row count , hash sum}
+     */
+    public long[] getFingerprint(int instance_id, int chain_id, long first_leaf, long last_leaf) {
+        long[] fingerprint = new long[2];
+        TreeMap<Long, long[]> chain_leaves = leaves.get(instance_id + "_" + chain_id);
+        if (chain_leaves != null) {
+            for (long[] leaf : chain_leaves.subMap(first_leaf, true, last_leaf, true).values()) {
+                fingerprint[0] += leaf[0];
+                fingerprint[1] = (fingerprint[1] + leaf[1]) & Long.MAX_VALUE;
+            }
+        }
+        return fingerprint;
+    }
+
+    /* Fingerprint term of a single row hash */
+    static long fingerprintOf(String hash) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(RAW.hexString2Bytes(hash));
+            long term = 0;
+            for (int i = 0; i < 7; i++) {
+                term = (term << 8) | (digest[i] & 0xFF);
+            }
+            return term;
+        } catch (NoSuchAlgorithmException | SQLException ex) {
+            throw new Error(ex);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Re-audits previously verified rows. For every range of a chain the database
+ * computes the fingerprint of the stored hashes server-side , and only ranges
+ * whose fingerprint differs from the one recorded at verification time are
+ * bisected down to leaves , whose rows are then re-verified.
+ */
+public class ReAuditor {
+
+    private static final Logger logger = Logger.getLogger(ReAuditor.class.getName());
+    private final String filepath;
+    private final String schema_name_int;
+    private final String table_name_int;
+    private final Stats auditStats = new Stats();
+    private long ranges_checked = 0;
+    private long ranges_changed = 0;
+    private long leaves_reverified = 0;
+
+    private ReAuditor(String filepath, String schema_name_int, String table_name_int) {
+        this.filepath = filepath;
+        this.schema_name_int = schema_name_int;
+        this.table_name_int = table_name_int;
+    }
+
+    /**
+     * Re-audit all chains with recorded fingerprints.
+     *
+     * @param filepath - File path
+     * @param schema_name_int - Schema name
+     * @param table_name_int - Table name
+     * @param instance_id - Restrict to this instance , null for all instances
+     * @param chain_id - Restrict to this chain , null for all chains
+     */
+    static void reAudit(String filepath, String schema_name_int, String table_name_int, Integer instance_id, Integer chain_id) {
+        ReAuditor auditor = new ReAuditor(filepath, schema_name_int, table_name_int);
+        RangeFingerprint fingerprints = RangeFingerprint.getInstance();
+        long leaves_per_range = Modes.getInstance().getREAUDIT_RANGE_SIZE() / fingerprints.getLeaf_size();
+        for (String key : fingerprints.getChains()) {
+            String[] ids = key.split("_");
+            int inst = Integer.parseInt(ids[0]);
+            int chain = Integer.parseInt(ids[1]);
+            if ((instance_id != null && instance_id != inst) || (chain_id != null && chain_id != chain)) {
+                continue;
+            }
+            long last_leaf = fingerprints.getLeaf(fingerprints.getHigh(inst, chain));
+            for (long first = 0; first <= last_leaf && !AuditControl.getInstance().isCancelled(); first += leaves_per_range) {
+                auditor.ranges_checked++;
+                long last = Math.min(first + leaves_per_range - 1, last_leaf);
+                if (!auditor.matches(inst, chain, first, last)) {
+                    auditor.ranges_changed++;
+                    auditor.drillDown(inst, chain, first, last);
+                }
+            }
+        }
+        System.out.println("Re-audited " + auditor.ranges_checked + " ranges , " + auditor.ranges_changed + " ranges changed since verification");
+        System.out.println("Re-verified " + auditor.auditStats.getSuccess_count() + " rows in " + auditor.leaves_reverified + " leaves");
+        if (auditor.auditStats.getFail_count() > 0) {
+            System.err.println("Failed to verify " + auditor.auditStats.getFail_count() + " rows");
+        }
+        System.out.println("");
+    }
+
+    /* Bisect a changed run of leaves until the changed leaves are found */
+    private void drillDown(int instance_id, int chain_id, long first_leaf, long last_leaf) {
+        if (AuditControl.getInstance().isCancelled()) {
+            return;
+        }
+        if (first_leaf == last_leaf) {
+            reverifyLeaf(instance_id, chain_id, first_leaf);
+            return;
+        }
+        long mid = first_leaf + (last_leaf - first_leaf) / 2;
+        if (!matches(instance_id, chain_id, first_leaf, mid)) {
+            drillDown(instance_id, chain_id, first_leaf, mid);
+        }
+        if (!matches(instance_id, chain_id, mid + 1, last_leaf)) {
+            drillDown(instance_id, chain_id, mid + 1, last_leaf);
+        }
+    }
+
+    /* Compare the recorded fingerprint of a run of leaves with the one computed by the database */
+    private boolean matches(int instance_id, int chain_id, long first_leaf, long last_leaf) {
+        RangeFingerprint fingerprints = RangeFingerprint.getInstance();
+        long[] expected = fingerprints.getFingerprint(instance_id, chain_id, first_leaf, last_leaf);
+        long[] actual = new long[2];
+        Connection con = DBConnection.getInstance().getConnection();
+        String fingerprint_qry = "select " + RangeFingerprint.SQL_FINGERPRINT + " from " + DBUtils.getDBUtils().getTableRef(schema_name_int, table_name_int) + " "
+                + "where ORABCTAB_INST_ID$ = ? and ORABCTAB_CHAIN_ID$ = ? and ORABCTAB_SEQ_NUM$ between ? and ?";
+        try ( PreparedStatement fingerprint_stmt = con.prepareStatement(fingerprint_qry)) {
+            fingerprint_stmt.setInt(1, instance_id);
+            fingerprint_stmt.setInt(2, chain_id);
+            fingerprint_stmt.setLong(3, first_leaf * fingerprints.getLeaf_size() + 1);
+            fingerprint_stmt.setLong(4, Math.min((last_leaf + 1) * fingerprints.getLeaf_size(), fingerprints.getHigh(instance_id, chain_id)));
+            try ( ResultSet rs = fingerprint_stmt.executeQuery()) {
+                if (rs.next()) {
+                    actual[0] = rs.getLong(1);
+                    actual[1] = rs.getLong(2);
+                }
+            }
+        } catch (SQLException ex) {
+            logger.log(Level.SEVERE, null, ex);
+            return false;
+        }
+        return expected[0] == actual[0] && expected[1] == actual[1];
+    }
+
+    /*
+     * Re-verify every row of a leaf , plus the row after it since it covers the
+     * last hash of the leaf. Expired rows may have been deleted from the start
+     * of the chain , the leaf is then re-verified from the first remaining row
+     * whose stored hash is taken as the start of the chain.
+     */
+    private void reverifyLeaf(int instance_id, int chain_id, long leaf) {
+        leaves_reverified++;
+        RangeFingerprint fingerprints = RangeFingerprint.getInstance();
+        List<ChainSummary> summaries = ChainSummary.getChainSummaries(schema_name_int, table_name_int, instance_id, chain_id);
+        long min_seq = summaries.isEmpty() ? 1 : summaries.get(0).getMin_seq();
+        long low = Math.max(leaf * fingerprints.getLeaf_size() + 1, min_seq);
+        long high = Math.min((leaf + 1) * fingerprints.getLeaf_size() + 1, fingerprints.getHigh(instance_id, chain_id));
+        if (low > high) {
+            System.out.println("Rows " + (leaf * fingerprints.getLeaf_size() + 1) + " to " + high + " were deleted from the start of the chain for instance id : "
+                    + instance_id + " , chain id : " + chain_id);
+            return;
+        }
+        String previous_hash = low == 1 || low == min_seq ? null
+                : HashColumn.getHashColumnInstance().getRowHash(schema_name_int, table_name_int, instance_id, chain_id, (int) low - 1);
+        Connection con = DBConnection.getInstance().getConnection();
+        String row_qry = "select ORABCTAB_SEQ_NUM$ , ORABCTAB_HASH$ from " + DBUtils.getDBUtils().getTableRef(schema_name_int, table_name_int) + " "
+                + "where ORABCTAB_INST_ID$ = ? and ORABCTAB_CHAIN_ID$ = ? and ORABCTAB_SEQ_NUM$ between ? and ? ORDER BY ORABCTAB_SEQ_NUM$";
+        try ( PreparedStatement row_stmt = con.prepareStatement(row_qry)) {
+            row_stmt.setInt(1, instance_id);
+            row_stmt.setInt(2, chain_id);
+            row_stmt.setLong(3, low);
+            row_stmt.setLong(4, high);
+            try ( ResultSet rs = row_stmt.executeQuery()) {
+                long expected_seq = low;
+                boolean verified_hashes = Modes.getInstance().isRECORD_VERIFIED_HASHES();
+                String verified_hash;
+                while (!AuditControl.getInstance().isCancelled() && rs.next()) {
+                    long seq_no = rs.getLong(1);
+                    String expected_hash = rs.getString(2);
+                    if (seq_no != expected_seq) {
+                        auditStats.addFailure(1);
+                        System.err.println("Missing rows for instance id : " + instance_id + " , chain id : " + chain_id
+                                + " , sequence no : " + expected_seq + " to " + (seq_no - 1));
+                    } else if (seq_no == min_seq && min_seq != 1) {
+                        /* The first remaining row starts the chain , there is no previous row to verify it against */
+                        System.out.println("Chain starts at sequence no : " + seq_no + " for instance id : " + instance_id + " , chain id : " + chain_id);
+                    } else if (low != 1 && previous_hash == null) {
+                        auditStats.addFailure(1);
+                        System.err.println("Missing row for instance id : " + instance_id + " , chain id : " + chain_id + " , sequence no : " + (low - 1));
+                    } else if (verified_hashes && (verified_hash = HashIndex.getInstance().get(instance_id, chain_id, seq_no)) != null) {
+                        /* Compare with the hash recorded when the row was verified , the row bytes need not be hashed again */
+                        if (verified_hash.equals(expected_hash)) {
+                            auditStats.addSuccess(1);
+                        } else {
+                            auditStats.addFailure(1);
+                            AuditControl.getInstance().reportMismatch(instance_id, chain_id, (int) seq_no);
+                            System.err.println("Stored hash changed since verification for instance id : " + instance_id + " , chain id : " + chain_id + " , sequence no : " + seq_no);
+                            System.err.println("Expected Hash : " + verified_hash);
+                            System.err.println("GOT : " + expected_hash);
+                        }
+                    } else if (VerifyWithPublish.verifyRow(filepath, schema_name_int, table_name_int, instance_id, chain_id, (int) seq_no, previous_hash, expected_hash)) {
+                        auditStats.addSuccess(1);
+                    } else {
+                        auditStats.addFailure(1);
+                    }
+                    previous_hash = expected_hash;
+                    expected_seq = seq_no + 1;
+                }
+                if (expected_seq <= high) {
+                    auditStats.addFailure(1);
+                    System.err.println("Missing rows for instance id : " + instance_id + " , chain id : " + chain_id
+                            + " , sequence no : " + expected_seq + " to " + high);
+                }
+            }
+        } catch (SQLException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        }
+    }
+}
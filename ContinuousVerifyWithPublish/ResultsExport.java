@@ -0,0 +1,236 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+
+/**
+ * Append-only columnar export of per-row verification results.
+ *
+ * File : "<schema>_<table>_<guid>.vres" , a sequence of blocks of up to
+ * BLOCK_ROWS rows. Every column of a block is stored on its own , Deflate
+ * compressed , so a scan only inflates the columns it reads. Big endian :
+ * block   : magic(4) version(4) block_length(4) row_count(4) column_count(4)
+ *           column_count x compressed_length(4) , compressed columns , crc32(4)
+ * The crc covers everything after block_length up to the crc itself , so a
+ * block torn by a crash is detected and ignored.
+ *
+ * Columns , in this order , with the width of one value :
+ * instance_id(4) chain_id(4) sequence_no(8) result(1) duration_us(8)
+ * row_bytes(8) lob_bytes(8) created_at(8) verified_at(8)
+ * sequence_no , created_at and verified_at are stored as the difference to
+ * the previous row of the block , which compresses well. Times are in epoch
+ * milliseconds , created_at is 0 where the creation time was not read.
+ */
+public class ResultsExport {
+
+    private static ResultsExport instance;
+    private static final Logger logger = Logger.getLogger(ResultsExport.class.getName());
+    public static final int MAGIC = 0x42435253;
+    public static final int VERSION = 1;
+    public static final int BLOCK_ROWS = 65536;
+    public static final String[] COLUMNS = {"instance_id", "chain_id", "sequence_no", "result", "duration_us",
+        "row_bytes", "lob_bytes", "created_at", "verified_at"};
+    public static final int[] WIDTHS = {4, 4, 8, 1, 8, 8, 8, 8, 8};
+    /* Columns stored as the difference to the previous row */
+    public static final boolean[] DELTA = {false, false, true, false, false, false, false, true, true};
+    private FileChannel channel;
+    private final ByteBuffer[] columns = new ByteBuffer[COLUMNS.length];
+    private final long[] previous = new long[COLUMNS.length];
+    private int rows;
+
+    public static ResultsExport getInstance() {
+        if (instance == null) {
+            instance = new ResultsExport();
+        }
+        return instance;
+    }
+
+    private ResultsExport() {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            columns[i] = ByteBuffer.allocate(BLOCK_ROWS * WIDTHS[i]);
+        }
+    }
+
+    /* Open the results file of this table for appending */
+    public synchronized void initResultsExport(String schema, String table) {
+        if (channel == null) {
+            String path = Utils.getUtils().cleanPath(schema + "_" + table + "_" + DBUtils.getDBUtils().getDbGUID() + ".vres");
+            try {
+                channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                /* Drop a block torn by a crash so new blocks follow the last complete one */
+                long valid_length = validLength(channel);
+                if (valid_length < channel.size()) {
+                    System.err.println("Truncating a torn block at offset " + valid_length + " of " + path);
+                    channel.truncate(valid_length);
+                }
+                channel.position(valid_length);
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE, null, ex);
+                throw new Error("Unable to open the verification results file " + path);
+            }
+        }
+    }
+
+    /**
+     * Add the result of a row verification.
+     *
+     * @param instance_id - Instance id
+     * @param chain_id - Chain id
+     * @param seq_no - Sequence number
+     * @param result - Did the row pass verification
+     * @param duration_nanos - Time taken to fetch and hash the row bytes
+     * @param row_bytes - Size of the row bytes
+     * @param lob_bytes - LOB bytes included in the row bytes
+     * @param created_at - Creation time of the row , 0 if not known
+     */
+    public synchronized void add(int instance_id, int chain_id, long seq_no, boolean result, long duration_nanos, long row_bytes,
+            long lob_bytes, long created_at) {
+        if (channel == null) {
+            return;
+        }
+        long[] values = {instance_id, chain_id, seq_no, result ? 1 : 0, duration_nanos / 1000, row_bytes, lob_bytes, created_at,
+            System.currentTimeMillis()};
+        for (int i = 0; i < COLUMNS.length; i++) {
+            long value = DELTA[i] ? values[i] - previous[i] : values[i];
+            previous[i] = values[i];
+            switch (WIDTHS[i]) {
+                case 1:
+                    columns[i].put((byte) value);
+                    break;
+                case 4:
+                    columns[i].putInt((int) value);
+                    break;
+                default:
+                    columns[i].putLong(value);
+                    break;
+            }
+        }
+        if (++rows == BLOCK_ROWS) {
+            writeBlock();
+        }
+    }
+
+    /* Append the pending rows and make the file durable */
+    public synchronized void flush() {
+        if (channel == null) {
+            return;
+        }
+        writeBlock();
+        try {
+            channel.force(false);
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Length of the complete blocks at the start of a results file.
+     *
+     * @param file - Results file
+     * @return - Offset just after the last complete block
+     */
+    public static long validLength(FileChannel file) throws IOException {
+        long offset = 0;
+        long size = file.size();
+        ByteBuffer header = ByteBuffer.allocate(12);
+        while (offset + 12 <= size) {
+            header.clear();
+            file.read(header, offset);
+            int block_length = header.getInt(8);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || block_length < 12 || offset + 12 + block_length > size) {
+                break;
+            }
+            ByteBuffer block = ByteBuffer.allocate(block_length);
+            while (block.hasRemaining() && file.read(block, offset + 12 + block.position()) > 0) {
+            }
+            CRC32 crc = new CRC32();
+            crc.update(block.array(), 0, block_length - 4);
+            if ((int) crc.getValue() != block.getInt(block_length - 4)) {
+                break;
+            }
+            offset += 12 + block_length;
+        }
+        return offset;
+    }
+
+    private void writeBlock() {
+        if (rows == 0) {
+            return;
+        }
+        byte[][] compressed = new byte[COLUMNS.length][];
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        int data_length = 0;
+        for (int i = 0; i < COLUMNS.length; i++) {
+            deflater.reset();
+            deflater.setInput(columns[i].array(), 0, columns[i].position());
+            deflater.finish();
+            byte[] buf = new byte[columns[i].position() + 64];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == buf.length) {
+                    byte[] grown = new byte[2 * buf.length];
+                    System.arraycopy(buf, 0, grown, 0, length);
+                    buf = grown;
+                }
+                length += deflater.deflate(buf, length, buf.length - length);
+            }
+            compressed[i] = new byte[length];
+            System.arraycopy(buf, 0, compressed[i], 0, length);
+            data_length += length;
+        }
+        deflater.end();
+        int block_length = 4 + 4 + 4 * COLUMNS.length + data_length + 4;
+        ByteBuffer block = ByteBuffer.allocate(12 + block_length);
+        block.putInt(MAGIC).putInt(VERSION).putInt(block_length).putInt(rows).putInt(COLUMNS.length);
+        for (byte[] column : compressed) {
+            block.putInt(column.length);
+        }
+        for (byte[] column : compressed) {
+            block.put(column);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(block.array(), 12, block.position() - 12);
+        block.putInt((int) crc.getValue());
+        block.flip();
+        long block_start = -1;
+        try {
+            block_start = channel.position();
+            while (block.hasRemaining()) {
+                channel.write(block);
+            }
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, null, ex);
+            /* Remove the torn block so later blocks follow the last complete one */
+            try {
+                if (block_start < 0) {
+                    throw ex;
+                }
+                channel.truncate(block_start);
+                channel.position(block_start);
+            } catch (IOException truncate_ex) {
+                logger.log(Level.SEVERE, null, truncate_ex);
+                throw new Error("Unable to write the verification results");
+            }
+            System.err.println("Dropped the results of " + rows + " rows after a failed write");
+        }
+        for (int i = 0; i < COLUMNS.length; i++) {
+            columns[i].clear();
+            previous[i] = 0;
+        }
+        rows = 0;
+    }
+}
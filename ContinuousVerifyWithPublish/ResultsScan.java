@@ -0,0 +1,166 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+
+/**
+ * Scans a verification results file written by ResultsExport and summarizes
+ * throughput , sizes and failures , optionally for one instance or chain.
+ * Only the columns a summary needs are inflated , row coordinates only for
+ * blocks that hold failures or when filtering.
+ */
+public class ResultsScan {
+
+    private static final Logger logger = Logger.getLogger(ResultsScan.class.getName());
+    private static final int INSTANCE_ID = 0;
+    private static final int CHAIN_ID = 1;
+    private static final int SEQUENCE_NO = 2;
+    private static final int RESULT = 3;
+    private static final int DURATION_US = 4;
+    private static final int ROW_BYTES = 5;
+    private static final int LOB_BYTES = 6;
+    private static final int VERIFIED_AT = 8;
+    private long rows;
+    private long failed;
+    private long duration_us;
+    private long row_bytes;
+    private long lob_bytes;
+    private long first_verified = Long.MAX_VALUE;
+    private long last_verified = Long.MIN_VALUE;
+
+    /**
+     * Scan a results file.
+     *
+     * @param path - Results file
+     * @param instance_id - Instance id , null for all instances
+     * @param chain_id - Chain id , null for all chains
+     */
+    public void scan(String path, Integer instance_id, Integer chain_id) {
+        try ( FileChannel file = FileChannel.open(Paths.get(Utils.getUtils().cleanPath(path)), StandardOpenOption.READ)) {
+            long valid_length = ResultsExport.validLength(file);
+            if (valid_length < file.size()) {
+                System.err.println("Ignoring a torn block at offset " + valid_length);
+            }
+            long offset = 0;
+            ByteBuffer header = ByteBuffer.allocate(12);
+            while (offset < valid_length) {
+                header.clear();
+                file.read(header, offset);
+                ByteBuffer block = ByteBuffer.allocate(header.getInt(8));
+                while (block.hasRemaining() && file.read(block, offset + 12 + block.position()) > 0) {
+                }
+                scanBlock(block, instance_id, chain_id);
+                offset += 12 + block.capacity();
+            }
+        } catch (IOException | DataFormatException ex) {
+            logger.log(Level.SEVERE, null, ex);
+            throw new Error("Unable to read the verification results file " + path);
+        }
+    }
+
+    private void scanBlock(ByteBuffer block, Integer instance_id, Integer chain_id) throws DataFormatException {
+        int block_rows = block.getInt(0);
+        int column_count = block.getInt(4);
+        int[] offsets = new int[column_count + 1];
+        offsets[0] = 8 + 4 * column_count;
+        for (int i = 0; i < column_count; i++) {
+            offsets[i + 1] = offsets[i] + block.getInt(8 + 4 * i);
+        }
+        ByteBuffer results = column(block, offsets, RESULT, block_rows);
+        boolean has_failures = false;
+        for (int r = 0; r < block_rows && !has_failures; r++) {
+            has_failures = results.get(r) != 1;
+        }
+        ByteBuffer instances = null;
+        ByteBuffer chains = null;
+        ByteBuffer sequences = null;
+        if (has_failures || instance_id != null) {
+            instances = column(block, offsets, INSTANCE_ID, block_rows);
+            chains = column(block, offsets, CHAIN_ID, block_rows);
+            sequences = column(block, offsets, SEQUENCE_NO, block_rows);
+        }
+        ByteBuffer durations = column(block, offsets, DURATION_US, block_rows);
+        ByteBuffer sizes = column(block, offsets, ROW_BYTES, block_rows);
+        ByteBuffer lobs = column(block, offsets, LOB_BYTES, block_rows);
+        ByteBuffer verified = column(block, offsets, VERIFIED_AT, block_rows);
+        long seq_no = 0;
+        long verified_at = 0;
+        for (int r = 0; r < block_rows; r++) {
+            verified_at += verified.getLong(8 * r);
+            if (sequences != null) {
+                seq_no += sequences.getLong(8 * r);
+            }
+            if (instance_id != null && (instances.getInt(4 * r) != instance_id || (chain_id != null && chains.getInt(4 * r) != chain_id))) {
+                continue;
+            }
+            rows++;
+            duration_us += durations.getLong(8 * r);
+            row_bytes += sizes.getLong(8 * r);
+            lob_bytes += lobs.getLong(8 * r);
+            first_verified = Math.min(first_verified, verified_at);
+            last_verified = Math.max(last_verified, verified_at);
+            if (results.get(r) != 1) {
+                failed++;
+                System.err.println("Hash Verification Failed for instance id : " + instances.getInt(4 * r) + " , chain id : " + chains.getInt(4 * r)
+                        + " , sequence no : " + seq_no + " at " + new Timestamp(verified_at));
+            }
+        }
+    }
+
+    /* Inflate one column of a block */
+    private static ByteBuffer column(ByteBuffer block, int[] offsets, int column, int block_rows) throws DataFormatException {
+        byte[] values = new byte[block_rows * ResultsExport.WIDTHS[column]];
+        Inflater inflater = new Inflater();
+        inflater.setInput(block.array(), offsets[column], offsets[column + 1] - offsets[column]);
+        int length = 0;
+        while (length < values.length && !inflater.finished()) {
+            length += inflater.inflate(values, length, values.length - length);
+        }
+        inflater.end();
+        return ByteBuffer.wrap(values);
+    }
+
+    private void report() {
+        System.out.println("Rows : " + rows);
+        System.out.println("Failed rows : " + failed);
+        System.out.println("Row bytes : " + row_bytes + " , LOB bytes : " + lob_bytes);
+        if (rows > 0) {
+            System.out.println("Verification time : " + duration_us / 1000 + " ms , " + duration_us / rows + " us per row , "
+                    + (duration_us > 0 ? rows * 1000000 / duration_us : 0) + " rows per second");
+            System.out.println("Verified between " + new Timestamp(first_verified) + " and " + new Timestamp(last_verified));
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Invalid Number Of Arguments Supplied.");
+            System.err.println("Java program should be run using :");
+            System.err.println("java ResultsScan <RESULTS_FILE> <INSTANCE_ID - OPTIONAL> <CHAIN_ID - OPTIONAL>");
+            throw new Error("Invalid Number Of Arguments Supplied.");
+        }
+        try {
+            final Integer INSTANCE_ID = args.length >= 2 ? Integer.parseInt(args[1]) : null;
+            final Integer CHAIN_ID = args.length == 3 ? Integer.parseInt(args[2]) : null;
+            ResultsScan scan = new ResultsScan();
+            scan.scan(args[0], INSTANCE_ID, CHAIN_ID);
+            scan.report();
+        } catch (NumberFormatException ex) {
+            System.err.println("INSTANCE_ID OR CHAIN_ID MUST BE AN INTEGER");
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Verifies a random sample of rows instead of every row. A row's hash only
+ * depends on its own columns and the stored hash of the previous row in its
+ * chain , so sampled rows can be verified independently of each other. The
+ * sample is stratified per chain and sized so that a tamper rate at or above
+ * the configured rate is detected with the configured confidence.
+ */
+public class SampleVerifier {
+
+    private static final Logger logger = Logger.getLogger(SampleVerifier.class.getName());
+    /* Unpredictable sample so rows to be checked cannot be guessed in advance */
+    private static final SecureRandom random = new SecureRandom();
+
+    /**
+     * Number of rows to sample so that at least one tampered row is picked
+     * with the given confidence when the given fraction of rows is tampered.
+     *
+     * @param confidence - Required detection probability
+     * @param tamper_rate - Smallest fraction of tampered rows to detect
+     * @return - Sample size
+     */
+    static long getSampleSize(double confidence, double tamper_rate) {
+        return (long) Math.ceil(Math.log(1 - confidence) / Math.log(1 - tamper_rate));
+    }
+
+    /**
+     * Verify a stratified random sample of rows.
+     *
+     * @param filepath - File path
+     * @param schema_name_int - Schema name
+     * @param table_name_int - Table name
+     * @param instance_id - Restrict to this instance , null for all instances
+     * @param chain_id - Restrict to this chain , null for all chains
+     */
+    static void verifySample(String filepath, String schema_name_int, String table_name_int, Integer instance_id, Integer chain_id) {
+        double confidence = Modes.getInstance().getSAMPLING_CONFIDENCE();
+        double tamper_rate = Modes.getInstance().getSAMPLING_TAMPER_RATE();
+        List<ChainSummary> chains = ChainSummary.getChainSummaries(schema_name_int, table_name_int, instance_id, chain_id);
+        long total_rows = 0;
+        for (ChainSummary chain : chains) {
+            total_rows += chain.getRow_count();
+        }
+        if (total_rows == 0) {
+            System.out.println("No rows to sample");
+            return;
+        }
+        long sample_size = Math.min(getSampleSize(confidence, tamper_rate), total_rows);
+        Stats sampleStats = new Stats();
+        long sampled = 0;
+        for (ChainSummary chain : chains) {
+            if (AuditControl.getInstance().isCancelled()) {
+                break;
+            }
+            /* Proportional allocation , every chain gets at least one row */
+            long chain_sample = Math.max(1, Math.round((double) sample_size * chain.getRow_count() / total_rows));
+            chain_sample = Math.min(chain_sample, chain.getMax_seq() - chain.getMin_seq() + 1);
+            sampled += chain_sample;
+            verifyChainSample(filepath, schema_name_int, table_name_int, chain, pickSequences(chain, chain_sample), sampleStats);
+        }
+        System.out.println("Sampled " + sampled + " of " + total_rows + " rows across " + chains.size() + " chains");
+        System.out.println("Verified " + sampleStats.getSuccess_count() + " sampled rows");
+        if (sampleStats.getSkip_count() > 0) {
+            System.out.println("Skipped " + sampleStats.getSkip_count() + " sampled rows starting a chain whose previous rows were deleted");
+        }
+        if (sampleStats.getFail_count() > 0) {
+            System.err.println("Failed to verify " + sampleStats.getFail_count() + " sampled rows");
+        } else if (sampled >= total_rows && sampleStats.getSkip_count() == 0) {
+            System.out.println("Every row was sampled , no tampering found");
+        } else {
+            double achieved = 1 - Math.pow(1 - tamper_rate, sampleStats.getSuccess_count());
+            System.out.println(String.format("No tampering found : with %.4f%% confidence fewer than %.4f%% of rows are tampered",
+                    achieved * 100, tamper_rate * 100));
+        }
+        System.out.println("");
+    }
+
+    /* Pick distinct random sequence numbers within the bounds of a chain */
+    private static TreeSet<Long> pickSequences(ChainSummary chain, long count) {
+        long range = chain.getMax_seq() - chain.getMin_seq() + 1;
+        TreeSet<Long> sequences = new TreeSet<>();
+        while (sequences.size() < count) {
+            sequences.add(chain.getMin_seq() + Math.floorMod(random.nextLong(), range));
+        }
+        return sequences;
+    }
+
+    /* Verify the sampled rows of one chain using batched point lookups */
+    private static void verifyChainSample(String filepath, String schema_name_int, String table_name_int, ChainSummary chain,
+            TreeSet<Long> sequences, Stats sampleStats) {
+        int instance_id = chain.getInstance_id();
+        int chain_id = chain.getChain_id();
+        int batch_size = Modes.getInstance().getSAMPLING_BATCH_SIZE();
+        List<Long> batch = new ArrayList<>(batch_size);
+        for (Long seq_no : sequences) {
+            if (AuditControl.getInstance().isCancelled()) {
+                return;
+            }
+            batch.add(seq_no);
+            if (batch.size() == batch_size) {
+                verifyBatch(filepath, schema_name_int, table_name_int, instance_id, chain_id, chain.getMin_seq(), batch, sampleStats);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty() && !AuditControl.getInstance().isCancelled()) {
+            verifyBatch(filepath, schema_name_int, table_name_int, instance_id, chain_id, chain.getMin_seq(), batch, sampleStats);
+        }
+    }
+
+    /* Fetch the stored hashes of a batch of rows and their previous rows in a single query , then verify each row */
+    private static void verifyBatch(String filepath, String schema_name_int, String table_name_int, int instance_id, int chain_id,
+            long min_seq, List<Long> batch, Stats sampleStats) {
+        Map<Long, String> stored_hashes = fetchHashes(schema_name_int, table_name_int, instance_id, chain_id, batch);
+        for (Long seq_no : batch) {
+            if (AuditControl.getInstance().isCancelled()) {
+                return;
+            }
+            String expected_hash = stored_hashes.get(seq_no);
+            String previous_hash = seq_no == 1 ? null : stored_hashes.get(seq_no - 1);
+            /* If the previous rows of the chain were deleted its first remaining row cannot be hashed , it is skipped */
+            if (expected_hash != null && seq_no != 1 && seq_no == min_seq) {
+                sampleStats.addSkip(1);
+                continue;
+            }
+            if (expected_hash == null || (seq_no != 1 && previous_hash == null)) {
+                sampleStats.addFailure(1);
+                System.err.println("Missing row for instance id : " + instance_id + " , chain id : " + chain_id + " , sequence no : "
+                        + (expected_hash == null ? seq_no : seq_no - 1));
+                continue;
+            }
+            if (VerifyWithPublish.verifyRow(filepath, schema_name_int, table_name_int, instance_id, chain_id, seq_no.intValue(), previous_hash, expected_hash)) {
+                sampleStats.addSuccess(1);
+            } else {
+                sampleStats.addFailure(1);
+            }
+        }
+    }
+
+    /* Stored hashes of the sampled rows and of the rows preceding them */
+    private static Map<Long, String> fetchHashes(String schema_name_int, String table_name_int, int instance_id, int chain_id, List<Long> batch) {
+        Connection con = DBConnection.getInstance().getConnection();
+        Map<Long, String> hashes = new HashMap<>();
+        StringBuilder in_list = new StringBuilder();
+        for (int i = 0; i < batch.size() * 2; i++) {
+            in_list.append(i == 0 ? "?" : " , ?");
+        }
+        String hash_qry = "select ORABCTAB_SEQ_NUM$ , ORABCTAB_HASH$ from " + DBUtils.getDBUtils().getTableRef(schema_name_int, table_name_int) + " "
+                + "where ORABCTAB_INST_ID$ = ? and ORABCTAB_CHAIN_ID$ = ? and ORABCTAB_SEQ_NUM$ in (" + in_list + ")";
+        try ( PreparedStatement hash_stmt = con.prepareStatement(hash_qry)) {
+            /* bind instance_id */
+            hash_stmt.setInt(1, instance_id);
+            /* bind chain_id */
+            hash_stmt.setInt(2, chain_id);
+            /* bind the sampled sequence numbers and their predecessors */
+            int pos = 3;
+            for (Long seq_no : batch) {
+                hash_stmt.setLong(pos++, seq_no);
+                hash_stmt.setLong(pos++, seq_no - 1);
+            }
+            try ( ResultSet rs = hash_stmt.executeQuery()) {
+                while (rs.next()) {
+                    hashes.put(rs.getLong(1), rs.getString(2));
+                }
+            }
+        } catch (SQLException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        }
+        return hashes;
+    }
+}
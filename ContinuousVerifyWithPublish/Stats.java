@@ -12,8 +12,10 @@
  */
 public class Stats {
 
-    private Integer success_count;
-    private Integer fail_count;
+    private long success_count;
+    private long fail_count;
+    /* Rows counted neither as verified nor as failed , such as the first remaining row of a chain */
+    private long skip_count;
     private static Stats instance;
 
     public Stats() {
@@ -28,19 +30,27 @@ public class Stats {
         return instance;
     }
 
-    public void addSuccess(int count) {
+    public void addSuccess(long count) {
         success_count += count;
     }
 
-    public void addFailure(int count) {
+    public void addFailure(long count) {
         fail_count += count;
     }
 
-    public Integer getSuccess_count() {
+    public void addSkip(long count) {
+        skip_count += count;
+    }
+
+    public long getSuccess_count() {
         return success_count;
     }
 
-    public Integer getFail_count() {
+    public long getFail_count() {
         return fail_count;
     }
+
+    public long getSkip_count() {
+        return skip_count;
+    }
 }
@@ -0,0 +1,118 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.json.JSONArray;
+
+
+/**
+ * Anchors the verified tip of every chain on OBP instead of publishing every
+ * row. The stored hash of a row covers the stored hash of the row before it ,
+ * so the anchored hash of a tip commits to the whole chain below it , and
+ * AnchorProof can prove any earlier row against it. The tips that moved are
+ * published with the storeAnchors chaincode function every
+ * obp_anchor_seconds and at the end of every verification cycle , one
+ * transaction per table.
+ */
+public class TipAnchor {
+
+    private static TipAnchor instance;
+    private static final Logger logger = Logger.getLogger(TipAnchor.class.getName());
+    /* "<schema>.<table>" -> "<instance_id>_<chain_id>" -> tip not anchored yet */
+    private final Map<String, Map<String, LogBuilder>> tips = new HashMap<>();
+
+    public static synchronized TipAnchor getInstance() {
+        if (instance == null) {
+            instance = new TipAnchor();
+        }
+        return instance;
+    }
+
+    private TipAnchor() {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "tip-anchor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = OBPUtils.getInstance().getObp_anchor_seconds();
+        timer.scheduleWithFixedDelay(this::anchorAll, period, period, TimeUnit.SECONDS);
+    }
+
+    /* Record the log of a row verified successfully as the tip of its chain */
+    public synchronized void add(LogBuilder log) {
+        tips.computeIfAbsent(log.getSchema_name() + "." + log.getTable_name(), k -> new HashMap<>())
+                .merge(log.getInstance_id() + "_" + log.getChain_id(), log, (tip, next) -> next.getSeq_no() > tip.getSeq_no() ? next : tip);
+    }
+
+    /**
+     * Anchor the tips of a table that moved since they were last anchored.
+     *
+     * @param schema_name - Schema name
+     * @param table_name - Table name
+     */
+    public void anchor(String schema_name, String table_name) {
+        Map<String, LogBuilder> table_tips;
+        synchronized (this) {
+            table_tips = tips.remove(schema_name + "." + table_name);
+        }
+        if (table_tips == null || table_tips.isEmpty()) {
+            return;
+        }
+        JSONArray anchors = new JSONArray();
+        for (LogBuilder tip : table_tips.values()) {
+            JSONArray entry = new JSONArray();
+            entry.put(tip.getInstance_id().toString());
+            entry.put(tip.getChain_id().toString());
+            entry.put(tip.getSeq_no().toString());
+            entry.put(tip.getHash());
+            anchors.put(entry);
+        }
+        JSONArray args = new JSONArray();
+        args.put("storeAnchors");
+        args.put(schema_name);
+        args.put(table_name);
+        args.put(DBUtils.getDBUtils().getDbGUID());
+        args.put(anchors.toString());
+        CommitTracker.getInstance().submit(args).thenAccept(anchored -> {
+            if (anchored) {
+                System.out.println("Anchored the tips of " + table_tips.size() + " chains of " + schema_name + "." + table_name);
+                return;
+            }
+            /* Anchor these tips with the next ones , unless newer tips replaced them meanwhile */
+            for (LogBuilder tip : table_tips.values()) {
+                add(tip);
+            }
+        });
+    }
+
+    private void anchorAll() {
+        try {
+            List<LogBuilder> tables = new ArrayList<>();
+            synchronized (this) {
+                for (Map<String, LogBuilder> table_tips : tips.values()) {
+                    if (!table_tips.isEmpty()) {
+                        tables.add(table_tips.values().iterator().next());
+                    }
+                }
+            }
+            for (LogBuilder table : tables) {
+                anchor(table.getSchema_name(), table.getTable_name());
+            }
+        } catch (RuntimeException ex) {
+            logger.log(Level.SEVERE, null, ex);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/* 
+ * ContinuousVerifyWithPublish Version 1.0
+ * 
+ * Copyright (c) 2021 Oracle and/or its affiliates.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl/
+ *
+ */
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Pool of transaction id and nonce pairs fetched ahead of time from the OBP
+ * transaction-id endpoint , so a POST does not wait for a GET first. Pairs are
+ * fetched asynchronously whenever one is taken , and on a timer that also
+ * discards pairs older than txn_id_ttl_seconds. Only when the pool is empty
+ * is a pair fetched synchronously.
+ */
+public class TxnIdPool {
+
+    private static TxnIdPool instance;
+    /* {txid , nonce , fetched at millis} */
+    private final ConcurrentLinkedQueue<Object[]> pool = new ConcurrentLinkedQueue<>();
+    /* pairs requested but not received yet */
+    private final AtomicInteger in_flight = new AtomicInteger();
+    private final int pool_size;
+    private final long ttl_millis;
+
+    public static synchronized TxnIdPool getInstance() {
+        if (instance == null) {
+            instance = new TxnIdPool();
+        }
+        return instance;
+    }
+
+    private TxnIdPool() {
+        this.pool_size = OBPUtils.getInstance().getTxn_id_pool_size();
+        this.ttl_millis = OBPUtils.getInstance().getTxn_id_ttl_seconds() * 1000L;
+        ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "txn-id-pool");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, OBPUtils.getInstance().getTxn_id_ttl_seconds() / 4);
+        refresher.scheduleWithFixedDelay(() -> {
+            discardExpired();
+            refill();
+        }, 0, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Take a transaction id and nonce , from the pool when one is ready.
+     *
+     * @return - {txid , nonce}
+     */
+    public String[] take() {
+        discardExpired();
+        Object[] entry = pool.poll();
+        refill();
+        if (entry != null) {
+            return new String[]{(String) entry[0], (String) entry[1]};
+        }
+        return OBPConnection.getInstance().getTxnIdAndNonce();
+    }
+
+    /* Request pairs until the pool and the pending requests make up the pool size */
+    private void refill() {
+        while (true) {
+            int pending = in_flight.get();
+            if (pool.size() + pending >= pool_size) {
+                return;
+            }
+            if (in_flight.compareAndSet(pending, pending + 1)) {
+                OBPConnection.getInstance().getTxnIdAndNonceAsync().whenComplete((pair, ex) -> {
+                    if (pair != null && pair[0] != null && pair[1] != null) {
+                        pool.add(new Object[]{pair[0], pair[1], System.currentTimeMillis()});
+                    }
+                    in_flight.decrementAndGet();
+                });
+            }
+        }
+    }
+
+    /* Drop pairs fetched longer than the ttl ago , the oldest are at the head */
+    private void discardExpired() {
+        long now = System.currentTimeMillis();
+        Object[] entry;
+        while ((entry = pool.peek()) != null && now - (long) entry[2] > ttl_millis) {
+            pool.remove(entry);
+        }
+    }
+}
@@ -88,6 +88,43 @@ public class Utils {
         }
     }
 
+    /**
+     * Convert a hex string such as a hash into bytes
+     *
+     * @param hex - Hex string
+     * @return bytes , empty if the string is null or not valid hex
+     */
+    public byte[] hexToBytes(String hex) {
+        if (hex == null || hex.length() % 2 != 0) {
+            return new byte[0];
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                return new byte[0];
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+
+    /**
+     * Convert bytes into an upper case hex string , as returned for RAW columns
+     *
+     * @param bytes - bytes
+     * @return hex string
+     */
+    public String bytesToHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(2 * bytes.length);
+        for (byte b : bytes) {
+            hex.append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xF, 16)));
+            hex.append(Character.toUpperCase(Character.forDigit(b & 0xF, 16)));
+        }
+        return hex.toString();
+    }
+
     /**
      * Clean the file path
      * @param filename - Name of the file.
@@ -54,24 +54,30 @@ public class VerifyWithPublish {
      * @param spare_col - Spare column data
      */
     static void writeSpareColumnData(Integer sign_algo_pos, Integer cert_id_pos, byte[] sign_algo, byte[] cert_id, byte[] spare_col) {
-        /* Get spare column as int value */
-        Integer spare_int = ByteBuffer.wrap(spare_col).order(ByteOrder.LITTLE_ENDIAN).getInt();
         try (final OutputStream byteStream = new FileOutputStream(IO.getIOInstance().getBytesFile(), true)) {
-            /* ORABCTAB_SIGNATURE_ALG$ has been set */
-            if ((spare_int & 1) == 1) {
-                byteStream.write(populateMetadata(sign_algo_pos, Constants.DB_NUMBER, 0, sign_algo.length));
-                byteStream.write(sign_algo);
-            }
-            /* ORABCTAB_SIGNATURE_CERT$ has been set */
-            if ((spare_int & 2) == 2) {
-                byteStream.write(populateMetadata(cert_id_pos, Constants.DB_RAW, 0, cert_id.length));
-                byteStream.write(cert_id);
-            }
+            writeSpareColumnData(byteStream, sign_algo_pos, cert_id_pos, sign_algo, cert_id, spare_col);
         } catch (IOException e) {
             logger.log(Level.SEVERE, null, e);
         }
     }
 
+    /* Writes the signature columns flagged in the spare column to a stream */
+    static void writeSpareColumnData(OutputStream byteStream, Integer sign_algo_pos, Integer cert_id_pos, byte[] sign_algo, byte[] cert_id,
+            byte[] spare_col) throws IOException {
+        /* Get spare column as int value */
+        Integer spare_int = ByteBuffer.wrap(spare_col).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        /* ORABCTAB_SIGNATURE_ALG$ has been set */
+        if ((spare_int & 1) == 1) {
+            byteStream.write(populateMetadata(sign_algo_pos, Constants.DB_NUMBER, 0, sign_algo.length));
+            byteStream.write(sign_algo);
+        }
+        /* ORABCTAB_SIGNATURE_CERT$ has been set */
+        if ((spare_int & 2) == 2) {
+            byteStream.write(populateMetadata(cert_id_pos, Constants.DB_RAW, 0, cert_id.length));
+            byteStream.write(cert_id);
+        }
+    }
+
     /**
      * Writes LOBS(CLOB , NCLOB , BLOB) type columns to disk
      *
@@ -91,8 +97,8 @@ public class VerifyWithPublish {
         /* is the column null? - 1 BYTE VALUE */
         int column_isnull = 0;
         /* Query to fetch column data */
-        String col_val_query = "select " + column_name_quoted + " " + "from" + " " + schema_name_int + "."
-                + table_name_int + " " + "where ORABCTAB_INST_ID$ = ? and " + "ORABCTAB_CHAIN_ID$ = ? and "
+        String col_val_query = "select " + column_name_quoted + " " + "from" + " " + DBUtils.getDBUtils().getTableRef(schema_name_int, table_name_int)
+                + " " + "where ORABCTAB_INST_ID$ = ? and " + "ORABCTAB_CHAIN_ID$ = ? and "
                 + "ORABCTAB_SEQ_NUM$ = ?";
         try ( PreparedStatement col_val_stmt = DBConnection.getInstance().getConnection().prepareStatement(col_val_query)) {
             /* bind instance_id */
@@ -157,6 +163,7 @@ public class VerifyWithPublish {
         } catch (SQLException ex) {
             logger.log(Level.SEVERE, null, ex);
         }
+        IO.getIOInstance().setLobBytes(IO.getIOInstance().getLobBytes() + column_length);
         try (final OutputStream byteStream = new FileOutputStream(IO.getIOInstance().getBytesFile(), true)) {
             /* append metadata to main buffer for all columns */
             byteStream.write(populateMetadata(col_pos, column_type, column_isnull, column_length));
@@ -197,8 +204,8 @@ public class VerifyWithPublish {
         /* temporary buffer for column value */
         byte[] temp_bytes = null;
         /* Query to fetch column data */
-        String col_val_query = "select " + column_name_quoted + " " + "from" + " " + schema_name_int + "."
-                + table_name_int + " " + "where ORABCTAB_INST_ID$ = ? and " + "ORABCTAB_CHAIN_ID$ = ? and "
+        String col_val_query = "select " + column_name_quoted + " " + "from" + " " + DBUtils.getDBUtils().getTableRef(schema_name_int, table_name_int)
+                + " " + "where ORABCTAB_INST_ID$ = ? and " + "ORABCTAB_CHAIN_ID$ = ? and "
                 + "ORABCTAB_SEQ_NUM$ = ?";
         try ( PreparedStatement col_val_stmt = DBConnection.getInstance().getConnection().prepareStatement(col_val_query)) {
             /* bind instance_id */
@@ -218,20 +225,7 @@ public class VerifyWithPublish {
                     if (temp_val == null) {
                         column_isnull = 1;
                     } else {
-                        if (column_type.equals(Constants.DB_CHAR) || column_type.equals(Constants.DB_NCHAR)) {
-                            /* trim blanks except for one blank in an all-blank value */
-                            temp_val = temp_val.trim();
-                            if (temp_val.length() == 0) {
-                                temp_val = " ";
-                            }
-                        }
-                        if (column_type.equals(Constants.DB_VARCHAR) || column_type.equals(Constants.DB_CHAR)) {
-                            /* Normalize: fetch the AL32UTF8 bytes */
-                            temp_bytes = CharacterSet.stringToAL32UTF8(temp_val);
-                        } else if (column_type.equals(Constants.DB_NVARCHAR) || column_type.equals(Constants.DB_NCHAR)) {
-                            /* Normalize: fetch the AL16UTF16 bytes */
-                            temp_bytes = CharacterSet.stringToAL16UTF16Bytes(temp_val);
-                        }
+                        temp_bytes = stringBytes(column_type, temp_val);
                     }
                 }
             } catch (SQLException ex) {
@@ -254,6 +248,31 @@ public class VerifyWithPublish {
         }
     }
 
+    /**
+     * Normalized bytes of a String column value as hashed by the database.
+     *
+     * @param column_type - column type
+     * @param temp_val - column value , not null
+     * @return - AL32UTF8 bytes for VARCHAR2 and CHAR , AL16UTF16 bytes for NVARCHAR2 and NCHAR
+     */
+    static byte[] stringBytes(String column_type, String temp_val) {
+        if (column_type.equals(Constants.DB_CHAR) || column_type.equals(Constants.DB_NCHAR)) {
+            /* trim blanks except for one blank in an all-blank value */
+            temp_val = temp_val.trim();
+            if (temp_val.length() == 0) {
+                temp_val = " ";
+            }
+        }
+        if (column_type.equals(Constants.DB_VARCHAR) || column_type.equals(Constants.DB_CHAR)) {
+            /* Normalize: fetch the AL32UTF8 bytes */
+            return CharacterSet.stringToAL32UTF8(temp_val);
+        } else if (column_type.equals(Constants.DB_NVARCHAR) || column_type.equals(Constants.DB_NCHAR)) {
+            /* Normalize: fetch the AL16UTF16 bytes */
+            return CharacterSet.stringToAL16UTF16Bytes(temp_val);
+        }
+        return null;
+    }
+
     /**
      * Writes Other Scalar type columns to disk.
      *
@@ -278,12 +297,12 @@ public class VerifyWithPublish {
             /* Query to fetch column data */
             String col_val_query = null;
             if (column_type.equals("JSON")) {
-                col_val_query = "select OSON_GET_CONTENT(" + column_name_quoted + ") " + "from" + " " + schema_name_int
-                        + "." + table_name_int + " " + "where ORABCTAB_INST_ID$ = ? and "
+                col_val_query = "select OSON_GET_CONTENT(" + column_name_quoted + ") " + "from" + " " + DBUtils.getDBUtils().getTableRef(schema_name_int, table_name_int)
+                        + " " + "where ORABCTAB_INST_ID$ = ? and "
                         + "ORABCTAB_CHAIN_ID$ = ? and " + "ORABCTAB_SEQ_NUM$ = ?";
             } else {
-                col_val_query = "select " + column_name_quoted + " " + "from" + " " + schema_name_int + "."
-                        + table_name_int + " " + "where ORABCTAB_INST_ID$ = ? and "
+                col_val_query = "select " + column_name_quoted + " " + "from" + " " + DBUtils.getDBUtils().getTableRef(schema_name_int, table_name_int)
+                        + " " + "where ORABCTAB_INST_ID$ = ? and "
                         + "ORABCTAB_CHAIN_ID$ = ? and " + "ORABCTAB_SEQ_NUM$ = ?";
             }
             /* bind instance_id */
@@ -381,7 +400,7 @@ public class VerifyWithPublish {
      * @param file_path - Path to row bytes file
      * @return - SHA-512 Hashed Row Bytes
      */
-    private static String hashSHA512(String file_path) {
+    static String hashSHA512(String file_path) {
         String ht = null;
         InputStream is = null;
         try {
@@ -426,6 +445,51 @@ public class VerifyWithPublish {
     }
 
 
+    /**
+     * Verify a single row whose previous row hash is already known and
+     * report the result.
+     *
+     * @param filepath - File path
+     * @param schema_name_int - Schema name
+     * @param table_name_int - Table name
+     * @param instance_id - Instance id
+     * @param chain_id - Chain id
+     * @param seq_no - Sequence number
+     * @param previous_hash - Stored hash of the previous row , null for the first row
+     * @param expected_hash - Stored hash of this row
+     * @return - if the calculated hash matches the stored hash
+     */
+    static boolean verifyRow(String filepath, String schema_name_int, String table_name_int, int instance_id, int chain_id, int seq_no,
+            String previous_hash, String expected_hash) {
+        HashColumn.getHashColumnInstance().setPrev_hash(previous_hash);
+        long started = System.nanoTime();
+        getBytesForRowHash(schema_name_int, table_name_int, instance_id, chain_id, seq_no);
+        String calculated_hash = hashSHA512(filepath);
+        boolean verified = calculated_hash.equals(expected_hash);
+        if (Modes.getInstance().isEXPORT_RESULTS()) {
+            ResultsExport.getInstance().add(instance_id, chain_id, seq_no, verified, System.nanoTime() - started,
+                    IO.getIOInstance().getBytesFile().length(), IO.getIOInstance().getLobBytes(), 0);
+        }
+        if (verified && Modes.getInstance().isRECORD_VERIFIED_HASHES()) {
+            HashIndex.getInstance().put(instance_id, chain_id, seq_no, expected_hash);
+        }
+        if (!verified) {
+            AuditControl.getInstance().reportMismatch(instance_id, chain_id, seq_no);
+            System.err.println("Hash Verification Failed for instance id : " + instance_id + " , chain id : " + chain_id + " , sequence no : " + seq_no);
+            System.err.println("Expected Hash : " + expected_hash);
+            System.err.println("GOT : " + calculated_hash);
+        }
+        /* If we are in a continous verification mode we need to build the log */
+        if (Modes.getInstance().getCONTINUOUS_VERIFICATION_MODE() != Constants.MODE_OFF) {
+            if (verified) {
+                new LogBuilder(schema_name_int, table_name_int, instance_id, chain_id, seq_no, calculated_hash).publish();
+            } else {
+                new LogBuilder(schema_name_int, table_name_int, instance_id, chain_id, seq_no, calculated_hash, expected_hash).publish();
+            }
+        }
+        return verified;
+    }
+
     /**
      * Report any discrepancy found in sequence numbers.
      *
@@ -451,12 +515,12 @@ public class VerifyWithPublish {
         /* Get the connection */
         Connection con = DBConnection.getInstance().getConnection();
         /* get all instances */
-        String instance_id_qry = "select DISTINCT ORABCTAB_INST_ID$ from " + schema_name_int + "." + table_name_int + " ORDER BY ORABCTAB_INST_ID$";
+        String instance_id_qry = "select DISTINCT ORABCTAB_INST_ID$ from " + DBUtils.getDBUtils().getTableRef(schema_name_int, table_name_int) + " ORDER BY ORABCTAB_INST_ID$";
         /* Prepare to create global level stats */
         Stats globalStats = new Stats();
         try {
             try ( PreparedStatement instance_id_stmt = con.prepareStatement(instance_id_qry);  ResultSet instance_rs = instance_id_stmt.executeQuery()) {
-                while (instance_rs.next()) {
+                while (!AuditControl.getInstance().isCancelled() && instance_rs.next()) {
                     int instance_id = instance_rs.getInt(1);
                     /*verify all chains for this instance */
                     verifyInstance(filepath, schema_name_int, table_name_int, instance_id, globalStats);
@@ -485,8 +549,8 @@ public class VerifyWithPublish {
         /* Get connection */
         Connection con = DBConnection.getInstance().getConnection();
         /* get all chains for this instance */
-        String chain_id_qry = "select DISTINCT ORABCTAB_CHAIN_ID$ from " + schema_name_int + "."
-                + table_name_int + " " + "where ORABCTAB_INST_ID$ = ? ORDER BY ORABCTAB_CHAIN_ID$";
+        String chain_id_qry = "select DISTINCT ORABCTAB_CHAIN_ID$ from " + DBUtils.getDBUtils().getTableRef(schema_name_int, table_name_int)
+                + " " + "where ORABCTAB_INST_ID$ = ? ORDER BY ORABCTAB_CHAIN_ID$";
         /* Prepare to create instance - level stats */
         Stats instanceStats = new Stats();
         try {
@@ -494,7 +558,7 @@ public class VerifyWithPublish {
                 /* bind instance_id */
                 chain_id_stmt.setInt(1, instance_id);
                 try ( ResultSet chain_rs = chain_id_stmt.executeQuery()) {
-                    while (chain_rs.next()) {
+                    while (!AuditControl.getInstance().isCancelled() && chain_rs.next()) {
                         int chain_id = chain_rs.getInt(1);
                         /*verify rows for this chain */
                         verifyChain(filepath, schema_name_int, table_name_int, instance_id, chain_id, instanceStats);
@@ -526,21 +590,39 @@ public class VerifyWithPublish {
      * failed.
      */
     private static void verifyChain(String filepath, String schema_name_int, String table_name_int, int instance_id, int chain_id, Stats instanceStats) {
+        /* Chains failing the integrity pre-pass have already been reported */
+        if (ChainIntegrity.getInstance().isUnhealthy(instance_id, chain_id)) {
+            System.err.println("Skipped unhealthy chain for instance id : " + instance_id + " , chain id : " + chain_id);
+            return;
+        }
         /* Get connection */
         Connection con = DBConnection.getInstance().getConnection();
         /* get all rows for this chain */
         /* Get all rows with sequence number greater than the current checkpoint because we are in
          * in a continous verification mode and we don't watch to verify previously verified rows
-         * again and again.
+         * again and again. The checkpoint row itself is fetched too , only to compare its stored
+         * hash with the one recorded when it was verified.
          */
-        String seq_no_query = "select ORABCTAB_SEQ_NUM$ , ORABCTAB_HASH$ from " + schema_name_int + "."
-                + table_name_int + " " + "where ORABCTAB_INST_ID$ = ? and " + "ORABCTAB_CHAIN_ID$ = ? "
-                + "AND ORABCTAB_SEQ_NUM$ > ? ORDER BY ORABCTAB_SEQ_NUM$";
+        String seq_no_query = "select ORABCTAB_SEQ_NUM$ , ORABCTAB_HASH$ , ORABCTAB_CREATION_TIME$ from " + DBUtils.getDBUtils().getTableRef(schema_name_int, table_name_int)
+                + " " + "where ORABCTAB_INST_ID$ = ? and " + "ORABCTAB_CHAIN_ID$ = ? "
+                + "AND ORABCTAB_SEQ_NUM$ >= ? ORDER BY ORABCTAB_SEQ_NUM$";
+        long checkpoint = CheckPoint.getInstance().getSequenceValue(instance_id, chain_id);
+        String checkpoint_hash = CheckPoint.getInstance().getLastSeenHash(instance_id, chain_id);
+        /* The previous hash of the first new row comes from the checkpoint , never from another chain */
+        HashColumn.getHashColumnInstance().setCurr_hash(checkpoint_hash);
+        /* stored hashes of the current and the previous row */
+        String row_hash = null;
+        String previous_row_hash = null;
         /*verified rows*/
         int verify_count = 0;
         /*verification failed rows */
         int fail_count = 0;
         Integer previous_seq = null;
+        /* rows verified and time of the last intra-cycle checkpoint flush */
+        int flush_rows = Modes.getInstance().getCHECKPOINT_FLUSH_ROWS();
+        long flush_millis = Modes.getInstance().getCHECKPOINT_FLUSH_SECONDS() * 1000L;
+        int rows_since_flush = 0;
+        long last_flush = System.currentTimeMillis();
         try {
             try ( PreparedStatement seq_no_stmt = con.prepareStatement(seq_no_query)) {
                 /* bind instance_id */
@@ -548,39 +630,73 @@ public class VerifyWithPublish {
                 /* bind chain_id */
                 seq_no_stmt.setInt(2, chain_id);
                 /* get checkpoint data */
-                seq_no_stmt.setInt(3, CheckPoint.getInstance().getSequenceValue(instance_id, chain_id));
+                seq_no_stmt.setLong(3, checkpoint);
                 try ( ResultSet seq_rs = seq_no_stmt.executeQuery()) {
                     Integer seq_no = null;
-                    while (seq_rs.next()) {
+                    while (!AuditControl.getInstance().isCancelled() && seq_rs.next()) {
                         seq_no = seq_rs.getInt(1);
+                        previous_row_hash = row_hash;
+                        row_hash = seq_rs.getString(2);
                         /* Sequence validation error */
                         if (!verifySequence(previous_seq, seq_no)) {
                             throw new Error("Invalid Sequence");
                         }
+                        if (seq_no == checkpoint) {
+                            /* The last verified row must still carry the hash it was verified with */
+                            if (checkpoint_hash == null) {
+                                HashColumn.getHashColumnInstance().setCurr_hash(row_hash);
+                            } else if (!checkpoint_hash.equals(row_hash)) {
+                                fail_count++;
+                                AuditControl.getInstance().reportMismatch(instance_id, chain_id, seq_no);
+                                System.err.println("Stored hash changed since verification for instance id : " + instance_id + " , chain id : " + chain_id + " , sequence no : " + seq_no);
+                                System.err.println("Expected Hash : " + checkpoint_hash);
+                                System.err.println("GOT : " + row_hash);
+                            }
+                            previous_seq = seq_no;
+                            continue;
+                        }
                         if (seq_no == 1) {
                             HashColumn.getHashColumnInstance().setPrev_hash(null);
                         } else {
                             HashColumn.getHashColumnInstance().setPrev_hash(HashColumn.getHashColumnInstance().getCurr_hash(schema_name_int, table_name_int, instance_id, chain_id, seq_no));
                         }
-                        HashColumn.getHashColumnInstance().setCurr_hash(seq_rs.getString(2));
+                        HashColumn.getHashColumnInstance().setCurr_hash(row_hash);
                         /* If this is the first row in a chain and the sequence number is not 1 , we assume the row is OK */
                         if (!HashColumn.getHashColumnInstance().isPrevRowExists() && seq_no != 1) {
                             verify_count++;
+                            if (Modes.getInstance().isRECORD_FINGERPRINTS()) {
+                                RangeFingerprint.getInstance().addRow(instance_id, chain_id, seq_no, row_hash, false);
+                            }
                             continue;
                         }
                         /*verify this row */
+                        long started = System.nanoTime();
                         getBytesForRowHash(schema_name_int, table_name_int, instance_id, chain_id, seq_no);
                         String calculated_hash = hashSHA512(filepath);
+                        long duration = System.nanoTime() - started;
                         String expected_hash = HashColumn.getHashColumnInstance().getRowHash(schema_name_int, table_name_int, instance_id, chain_id, seq_no);
+                        if (Modes.getInstance().isEXPORT_RESULTS()) {
+                            Timestamp created_at = seq_rs.getTimestamp(3);
+                            ResultsExport.getInstance().add(instance_id, chain_id, seq_no, calculated_hash.equals(expected_hash), duration,
+                                    IO.getIOInstance().getBytesFile().length(), IO.getIOInstance().getLobBytes(), created_at == null ? 0 : created_at.getTime());
+                        }
+                        /* Account for this row in the range fingerprints used by re-audits */
+                        if (Modes.getInstance().isRECORD_FINGERPRINTS()) {
+                            RangeFingerprint.getInstance().addRow(instance_id, chain_id, seq_no, expected_hash, calculated_hash.equals(expected_hash));
+                        }
                         if (calculated_hash.equals(expected_hash)) {
                             /*verification successfull */
                             verify_count++;
+                            if (Modes.getInstance().isRECORD_VERIFIED_HASHES()) {
+                                HashIndex.getInstance().put(instance_id, chain_id, seq_no, expected_hash);
+                            }
                             /* If we are in a continous verification mode we need to start building the log */
                             if(Modes.getInstance().getCONTINUOUS_VERIFICATION_MODE() != Constants.MODE_OFF)
                                 new LogBuilder(schema_name_int, table_name_int, instance_id, chain_id, seq_no, calculated_hash).publish();
                         } else {
                             /*verification failed */
                             fail_count++;
+                            AuditControl.getInstance().reportMismatch(instance_id, chain_id, seq_no);
                             System.err.println("Hash Verification Failed for instance id : " + instance_id + " , chain id : " + chain_id + " , sequence no : " + seq_no);
                             System.err.println("Expected Hash : " + expected_hash);
                             System.err.println("GOT : " + calculated_hash);
@@ -603,10 +719,25 @@ public class VerifyWithPublish {
                                 new LogBuilder(schema_name_int, table_name_int, instance_id, chain_id, seq_no, calculated_hash, expected_hash).publish();
                         }
                         previous_seq = seq_no;
+                        /* Periodically make the progress on this chain durable so a restart resumes from here */
+                        rows_since_flush++;
+                        if (!AuditControl.getInstance().isCancelled()
+                                && ((flush_rows > 0 && rows_since_flush >= flush_rows)
+                                || (flush_millis > 0 && System.currentTimeMillis() - last_flush >= flush_millis))) {
+                            CheckPoint.getInstance().setLastSeenSequence(instance_id, chain_id, seq_no, row_hash);
+                            CheckPoint.getInstance().flushCheckPoints(schema_name_int, table_name_int);
+                            rows_since_flush = 0;
+                            last_flush = System.currentTimeMillis();
+                        }
                     }
-                    if(seq_no != null) {
+                    /* After a fail-fast cancellation resume before the failing row so it is reported again next cycle */
+                    if (AuditControl.getInstance().isCancelled() && seq_no != null) {
+                        if (seq_no - 1 > checkpoint) {
+                            CheckPoint.getInstance().setLastSeenSequence(instance_id, chain_id, seq_no - 1, previous_row_hash);
+                        }
+                    } else if (seq_no != null && (seq_no != checkpoint || checkpoint_hash == null)) {
                         /* set the last seq_no seen for this chain_id */
-                        CheckPoint.getInstance().setLastSeenSequence(instance_id, chain_id, seq_no);
+                        CheckPoint.getInstance().setLastSeenSequence(instance_id, chain_id, seq_no, row_hash);
                     }
                     System.out.println("Verified " + verify_count + " rows for instance id : " + instance_id + " , chain id : " + chain_id);
                     if (fail_count > 0) {
@@ -634,7 +765,7 @@ public class VerifyWithPublish {
      * @param chain_id - chain id of the row
      * @param sequence_id - sequence id of the row
      */
-    private static void getBytesForRowHash(String schema_name_int, String table_name_int, int instance_id,
+    static void getBytesForRowHash(String schema_name_int, String table_name_int, int instance_id,
             int chain_id, int sequence_id) {
         Connection con = DBConnection.getInstance().getConnection();
         /* Column Type */
@@ -652,6 +783,7 @@ public class VerifyWithPublish {
         /* Spare column */
         byte[] spare_col = null;
         /* Lets clear all the previous bytes */
+        IO.getIOInstance().setLobBytes(0);
         try (final OutputStream byteStream = new FileOutputStream(IO.getIOInstance().getBytesFile())) {
             byteStream.close();
         } catch (FileNotFoundException ex) {
@@ -673,8 +805,8 @@ public class VerifyWithPublish {
             /* Block to handle ORABCTAB_SIGNATURE_ALG$ , ORABCTAB_SIGNATURE_CERT$ , ORABCTAB_SPARE$ columns */
             if (column_name.equals(Constants.DB_SIG_ALGO) || column_name.equals(Constants.DB_SIG_CERT) || column_name.equals(Constants.DB_BC_SPARE)) {
                 /* Query to fetch column data */
-                String col_val_query = "select " + column_name_quoted + " " + "from" + " " + schema_name_int + "."
-                        + table_name_int + " " + "where ORABCTAB_INST_ID$ = ? and " + "ORABCTAB_CHAIN_ID$ = ? and "
+                String col_val_query = "select " + column_name_quoted + " " + "from" + " " + DBUtils.getDBUtils().getTableRef(schema_name_int, table_name_int)
+                        + " " + "where ORABCTAB_INST_ID$ = ? and " + "ORABCTAB_CHAIN_ID$ = ? and "
                         + "ORABCTAB_SEQ_NUM$ = ?";
                 /* bind instance_id */
                 try ( PreparedStatement col_val_stmt = con.prepareStatement(col_val_query)) {
@@ -776,6 +908,10 @@ public class VerifyWithPublish {
         /* Clean schema and table name */
         String schema_name_int = Utils.getUtils().cleanString(schema, false);
         String table_name_int = Utils.getUtils().cleanString(table, false);
+        /* Table metadata from the local snapshot while the table is unchanged */
+        if (Modes.getInstance().isMETADATA_CACHE()) {
+            MetadataCache.getInstance().initTableMetadata(schema_name_int, table_name_int);
+        }
         String db_guid = DBUtils.getDBUtils().getDbGUID();
         final String filepath = schema_name_int + "_" + table_name_int + "_" + db_guid + "_" + "bytesfile" +".dat";
         /* File as specified in file_path */
@@ -789,8 +925,40 @@ public class VerifyWithPublish {
         if(mode != Constants.MODE_OFF) {
             CheckPoint.getInstance().initCheckPoints(schema_name_int, table_name_int);
         }
+        String verification_type = Modes.getInstance().getVERIFICATION_TYPE();
+        /* Load the range fingerprints recorded by previous verifications */
+        if (Modes.getInstance().isRECORD_FINGERPRINTS() || verification_type.equals(Constants.VERIFY_REAUDIT)) {
+            RangeFingerprint.getInstance().initFingerprints(schema_name_int, table_name_int);
+        }
+        /* Open the verified hashes recorded by previous verifications */
+        if (Modes.getInstance().isRECORD_VERIFIED_HASHES()) {
+            HashIndex.getInstance().initHashIndex(schema_name_int, table_name_int);
+        }
+        /* Append per-row results to the columnar results file */
+        if (Modes.getInstance().isEXPORT_RESULTS()) {
+            ResultsExport.getInstance().initResultsExport(schema_name_int, table_name_int);
+        }
+        AuditControl.getInstance().reset();
+        /* Read every query of this cycle as of one SCN so all of them see the same data */
+        if (Modes.getInstance().isCONSISTENT_SNAPSHOT()) {
+            long scn = DBUtils.getDBUtils().captureSnapshotScn();
+            System.out.println("Verifying as of SCN : " + scn);
+            if (mode != Constants.MODE_OFF) {
+                CheckPoint.getInstance().setSnapshotScn(scn);
+            }
+        }
+        /* Find gaps , duplicates and truncated chains before fetching any row bytes */
+        if (sequence_no == null && verification_type.equals(Constants.VERIFY_FULL) && Modes.getInstance().isINTEGRITY_PREPASS()) {
+            ChainIntegrity.getInstance().check(schema_name_int, table_name_int, instance_id, chain_id);
+        }
         boolean success = true;
-        if (instance_id == null) {
+        if (sequence_no == null && verification_type.equals(Constants.VERIFY_SAMPLE)) {
+            /* Verify a random sample of rows , optionally restricted to an instance or chain */
+            SampleVerifier.verifySample(filepath, schema_name_int, table_name_int, instance_id, chain_id);
+        } else if (sequence_no == null && verification_type.equals(Constants.VERIFY_REAUDIT)) {
+            /* Re-audit previously verified rows using server-side range fingerprints */
+            ReAuditor.reAudit(filepath, schema_name_int, table_name_int, instance_id, chain_id);
+        } else if (instance_id == null) {
             /* If instance id is not specified , verify all instances */
             verifyAllInstances(filepath, schema_name_int, table_name_int);
         } else if (chain_id == null) {
@@ -801,40 +969,89 @@ public class VerifyWithPublish {
             verifyChain(filepath, schema_name_int, table_name_int, instance_id, chain_id, null);
         } else {
             /* Verify a single row */
-            getBytesForRowHash(schema_name_int, table_name_int, instance_id, chain_id, sequence_no);
-            String calculated_hash = hashSHA512(filepath);
             String expected_hash = HashColumn.getHashColumnInstance().getRowHash(schema_name_int, table_name_int, instance_id, chain_id, sequence_no);
-            if (calculated_hash.equals(expected_hash)) {
-                System.out.println("Hash Verification Successful!");
-                System.out.println("Hash : " + calculated_hash);
+            /* A row verified before only needs its stored hash compared with the verified one */
+            String verified_hash = Modes.getInstance().isRECORD_VERIFIED_HASHES()
+                    ? HashIndex.getInstance().get(instance_id, chain_id, sequence_no) : null;
+            if (verified_hash != null) {
+                if (verified_hash.equals(expected_hash)) {
+                    System.out.println("Hash Verification Successful! Stored hash matches the previously verified hash");
+                    System.out.println("Hash : " + expected_hash);
+                } else {
+                    success = false;
+                    System.err.println("Stored hash changed since verification");
+                    System.err.println("Expected Hash : " + verified_hash);
+                    System.err.println("GOT : " + expected_hash);
+                }
             } else {
-                success = false;
-                System.err.println("Hash Verfication Failed");
-                System.err.println("Expected Hash : " + expected_hash);
-                System.err.println("GOT : " + calculated_hash);
+                long started = System.nanoTime();
+                getBytesForRowHash(schema_name_int, table_name_int, instance_id, chain_id, sequence_no);
+                String calculated_hash = hashSHA512(filepath);
+                if (Modes.getInstance().isEXPORT_RESULTS()) {
+                    ResultsExport.getInstance().add(instance_id, chain_id, sequence_no, calculated_hash.equals(expected_hash), System.nanoTime() - started,
+                            IO.getIOInstance().getBytesFile().length(), IO.getIOInstance().getLobBytes(), 0);
+                }
+                if (calculated_hash.equals(expected_hash)) {
+                    System.out.println("Hash Verification Successful!");
+                    System.out.println("Hash : " + calculated_hash);
+                    if (Modes.getInstance().isRECORD_VERIFIED_HASHES()) {
+                        HashIndex.getInstance().put(instance_id, chain_id, sequence_no, expected_hash);
+                    }
+                } else {
+                    success = false;
+                    System.err.println("Hash Verfication Failed");
+                    System.err.println("Expected Hash : " + expected_hash);
+                    System.err.println("GOT : " + calculated_hash);
+                }
             }
         }
+        /* After a fail-fast cancellation optionally keep verifying the failing chain only */
+        AuditControl.getInstance().narrowFailedChain(filepath, schema_name_int, table_name_int);
+        /* Anchor the chain tips verified in this cycle */
+        if (mode == Constants.MODE_OBP && OBPUtils.getInstance().isObp_anchor_tips()) {
+            TipAnchor.getInstance().anchor(schema_name_int, table_name_int);
+        }
+        /* Close the Merkle batch of this cycle */
+        if (mode == Constants.MODE_OBP && OBPUtils.getInstance().isObp_merkle_batches()) {
+            MerkleBatch.getInstance().flush(schema_name_int, table_name_int);
+        }
+        /* Anchor the signed digest of the table after a successful cycle */
+        if (mode == Constants.MODE_OBP && OBPUtils.getInstance().isObp_signed_digest()) {
+            DigestAnchor.getInstance().anchor(schema_name_int, table_name_int);
+        }
+        /* Publish the pending logs , or make them durable in the outbox , before the checkpoint that covers them */
+        if (mode == Constants.MODE_OBP && OBPUtils.getInstance().isPublish_outbox()) {
+            PublishOutbox.getInstance(schema_name_int, table_name_int).sync();
+        } else if (mode == Constants.MODE_OBP && OBPUtils.getInstance().getObp_batch_size() > 1) {
+            LogBatcher.getInstance().flush();
+        }
+        /* Checkpoint only rows whose logs committed */
+        if (mode == Constants.MODE_OBP && OBPUtils.getInstance().isObp_async_submit() && !OBPUtils.getInstance().isPublish_outbox()) {
+            CommitTracker.getInstance().awaitCommitted();
+        }
+        if (mode == Constants.MODE_OBP) {
+            PublishWatermark.getInstance().force();
+            OBPLimiter limiter = OBPLimiter.getInstance();
+            System.out.println("OBP concurrency limit : " + limiter.getLimit() + " , in flight : " + limiter.getIn_flight() + " , circuit : " + limiter.getState());
+        }
+        /* Make the local log of this cycle durable before the savepoint covers it , the log writer rotates it in the background */
+        if(mode == Constants.MODE_LOCAL || (mode == Constants.MODE_OBP
+                && (OBPUtils.getInstance().isObp_anchor_tips() || OBPUtils.getInstance().isObp_merkle_batches()
+                || OBPUtils.getInstance().isObp_signed_digest()))) {
+            LogWriter.getInstance(schema_name_int, table_name_int).sync();
+        }
         /* Make a savepoint */
         if(mode != Constants.MODE_OFF) {
             CheckPoint.getInstance().exportCheckPoints(schema_name_int, table_name_int);
         }
-        /* If we are building the log locally check if it exceeded 1GB size. If yes copy that
-           with timestamp and start a fresh log.
-        */
-        if(mode == Constants.MODE_LOCAL) {
-            String fname = schema_name_int + "_" + table_name_int + "_" + db_guid + ".log";
-            File file = new File(Utils.getUtils().cleanPath(fname));
-            /* If file is greater than a GB */
-            if(file.exists() && (file.length() / (1024 * 1024)) > 1024) {
-                try {
-                    String copykey = schema_name_int + "_" + table_name_int + "_" + "_" + db_guid + "_" + new Timestamp(System.currentTimeMillis()).getTime() + ".log";
-                    File copyFile = new File(Utils.getUtils().cleanPath(copykey));
-                    Files.copy(file.toPath(), copyFile.toPath());
-                    file.delete();
-                } catch (IOException ex) {
-                    logger.log(Level.SEVERE, null, ex);
-                }
-            }
+        if (Modes.getInstance().isRECORD_FINGERPRINTS()) {
+            RangeFingerprint.getInstance().exportFingerprints();
+        }
+        if (Modes.getInstance().isRECORD_VERIFIED_HASHES()) {
+            HashIndex.getInstance().force();
+        }
+        if (Modes.getInstance().isEXPORT_RESULTS()) {
+            ResultsExport.getInstance().flush();
         }
         /* Delete temp bytes file created */
         if (!(Modes.getInstance().isCOPY_BYTESFILE_FOR_FAILED() && !success)) {
@@ -82,6 +82,14 @@ var Chaincode = class {
                 throw new Error('hash must be a non-empty string');
             }
             log.expected_hash = exp_hash;
+        }
+        /* Calculate bucket index */
+        let idx = (sequence_no - 1) % 100;
+        /* Storing the same log again , for instance after a restart , changes nothing */
+        if (sameLog(res[idx], log)) {
+            return;
+        }
+        if(!log.result) {
             /* Record the failure in the failed queue */
             let failedQueueKey = getOperationKey(schema, table_name, pdb_guid, 'failedQueue');
             let failedQueue = await stub.getState(failedQueueKey);
@@ -93,8 +101,6 @@ var Chaincode = class {
             failedQueue.push(log);
             await stub.putState(failedQueueKey, Buffer.from(JSON.stringify(failedQueue),'utf8'));
         }
-        /* Calculate bucket index */
-        let idx = (sequence_no - 1) % 100;
         res[idx] = log;
         /* Get the key for last 100 array */
         let last100Key = getOperationKey(schema, table_name, pdb_guid, 'last100');
@@ -114,6 +120,239 @@ var Chaincode = class {
         await stub.putState(id, Buffer.from(JSON.stringify(res),'utf8'));
     }
 
+    /* Store the Information about many verified rows of a table in one
+       transaction. Each bucket touched by the batch is read and written
+       once, and last100 and failedQueue are updated once for the whole
+       batch, leaving the same state as storing the logs one by one.
+       Logs already stored unchanged are skipped.
+    */
+    async storeLogBatch(stub, args, thisClass) {
+        if (args.length != 4) {
+            throw new Error('Incorrect number of arguments. Expecting 4. Expected arguments : <SCHEMA> <TABLE_NAME> <PDB_GUID> <LOGS - JSON ARRAY OF [INSTANCE_ID, CHAIN_ID, SEQUENCE_NO, VERIFICATION_RESULT, VERIFIED_HASH, FAILED_HASH - IN CASE OF VERIFICATION FAILURE]>');
+        }
+        /* Get all input elements */
+        let schema = args[0];
+        let table_name = args[1];
+        let pdb_guid = args[2];
+        let entries = JSON.parse(args[3]);
+        if (!Array.isArray(entries) || entries.length == 0) {
+            throw new Error('logs must be a non-empty JSON array');
+        }
+        /* Buckets read so far, the changed ones are written once at the end */
+        let buckets = new Map();
+        let changed = new Set();
+        let logs = [];
+        let failed = [];
+        for (let entry of entries) {
+            let log = buildLog(entry[0], entry[1], entry[2], entry[3], entry[4], entry[5]);
+            let id = getId(schema , table_name , pdb_guid , entry[0] , entry[1], log.sequence_no);
+            let res = buckets.get(id);
+            if (res === undefined) {
+                res = await stub.getState(id);
+                /* If the array doesn't exist, we create a array with bucket size of 100 */
+                if(!res.toString()) {
+                    res = new Array(100).fill();
+                }else {
+                    res = JSON.parse(res.toString('utf8'));
+                }
+                buckets.set(id, res);
+            }
+            let idx = (log.sequence_no - 1) % 100;
+            if (sameLog(res[idx], log)) {
+                continue;
+            }
+            res[idx] = log;
+            changed.add(id);
+            logs.push(log);
+            if (!log.result) {
+                failed.push(log);
+            }
+        }
+        /* Record the failures in the failed queue */
+        if (failed.length > 0) {
+            let failedQueueKey = getOperationKey(schema, table_name, pdb_guid, 'failedQueue');
+            let failedQueue = await stub.getState(failedQueueKey);
+            if(!failedQueue.toString()) {
+                failedQueue = []
+            }else {
+                failedQueue = JSON.parse(failedQueue.toString('utf8'));
+            }
+            failedQueue = failedQueue.concat(failed);
+            await stub.putState(failedQueueKey, Buffer.from(JSON.stringify(failedQueue),'utf8'));
+        }
+        if (logs.length == 0) {
+            return;
+        }
+        /* Append to last 100 , keeping as many records as storeLog does */
+        let last100Key = getOperationKey(schema, table_name, pdb_guid, 'last100');
+        let last100 = await stub.getState(last100Key);
+        if(!last100.toString()) {
+            last100 = [];
+        }else {
+            last100 = JSON.parse(last100.toString('utf8'));
+        }
+        last100 = last100.concat(logs);
+        if(last100.length > 101) {
+            last100 = last100.slice(last100.length - 101);
+        }
+        await stub.putState(last100Key, Buffer.from(JSON.stringify(last100),'utf8'));
+        for (let id of changed) {
+            await stub.putState(id, Buffer.from(JSON.stringify(buckets.get(id)),'utf8'));
+        }
+    }
+
+    /* Anchor the verified tips of chains. The stored hash of a row covers
+       the stored hash of the row before it, so the anchored hash of a tip
+       commits to every row of the chain up to it. An anchor only moves
+       forward, an older or identical tip is ignored.
+    */
+    async storeAnchors(stub, args, thisClass) {
+        if (args.length != 4) {
+            throw new Error('Incorrect number of arguments. Expecting 4. Expected arguments : <SCHEMA> <TABLE_NAME> <PDB_GUID> <ANCHORS - JSON ARRAY OF [INSTANCE_ID, CHAIN_ID, SEQUENCE_NO, HASH]>');
+        }
+        /* Get all input elements */
+        let schema = args[0];
+        let table_name = args[1];
+        let pdb_guid = args[2];
+        let entries = JSON.parse(args[3]);
+        if (!Array.isArray(entries) || entries.length == 0) {
+            throw new Error('anchors must be a non-empty JSON array');
+        }
+        for (let entry of entries) {
+            let log = buildLog(entry[0], entry[1], entry[2], 'true', entry[3]);
+            let anchor = {instance_id: log.instance_id, chain_id: log.chain_id, sequence_no: log.sequence_no, hash: log.got_hash};
+            let anchorKey = getAnchorKey(schema, table_name, pdb_guid, anchor.instance_id, anchor.chain_id);
+            let current = await stub.getState(anchorKey);
+            if (current.toString() && JSON.parse(current.toString('utf8')).sequence_no >= anchor.sequence_no) {
+                continue;
+            }
+            await stub.putState(anchorKey, Buffer.from(JSON.stringify(anchor),'utf8'));
+        }
+    }
+
+    /* Read the anchored tip of a chain */
+    async readAnchor(stub, args, thisClass) {
+        let jsonResp = {};
+        if (args.length != 5) {
+            throw new Error('Incorrect number of arguments. Expecting 5. Expected arguments: <SCHEMA> <TABLE_NAME> <PDB_GUID> <INSTANCE_ID> <CHAIN_ID>');
+        }
+        let anchorKey = getAnchorKey(args[0], args[1], args[2], parseInt(args[3]), parseInt(args[4]));
+        let result = await stub.getState(anchorKey);
+        if(!result.toString()) {
+            jsonResp.Error = 'Anchor not found for this schema , table , inst_id and chain_id';
+            throw new Error(JSON.stringify(jsonResp));
+        }
+        return result;
+    }
+
+    /* Anchor the Merkle root of a batch of verified row logs. The tree stays
+       with the verifier, which proves the log of any row of the batch
+       against this root. A root is never replaced, storing the same root
+       again is a no-op.
+    */
+    async storeMerkleRoot(stub, args, thisClass) {
+        if (args.length != 8) {
+            throw new Error('Incorrect number of arguments. Expecting 8. Expected arguments : <SCHEMA> <TABLE_NAME> <PDB_GUID> <BATCH_ID> <ROOT> <LEAF_COUNT> <FIRST - [INSTANCE_ID, CHAIN_ID, SEQUENCE_NO]> <LAST - [INSTANCE_ID, CHAIN_ID, SEQUENCE_NO]>');
+        }
+        let batch = {};
+        batch.batch_id = args[3];
+        batch.root = args[4];
+        batch.leaf_count = parseInt(args[5]);
+        batch.first = JSON.parse(args[6]);
+        batch.last = JSON.parse(args[7]);
+        if (batch.root.length <= 0) {
+            throw new Error('root must be a non-empty string');
+        }
+        if (isNaN(batch.leaf_count) || batch.leaf_count <= 0) {
+            throw new Error('leaf count must be a positive number. GOT : ' + args[5]);
+        }
+        let batchKey = getMerkleKey(args[0], args[1], args[2], batch.batch_id);
+        let current = await stub.getState(batchKey);
+        if (current.toString()) {
+            if (JSON.parse(current.toString('utf8')).root === batch.root) {
+                return;
+            }
+            throw new Error('A different root is already anchored for batch id ' + batch.batch_id);
+        }
+        await stub.putState(batchKey, Buffer.from(JSON.stringify(batch),'utf8'));
+    }
+
+    /* Read the anchored Merkle root of a batch */
+    async readMerkleRoot(stub, args, thisClass) {
+        let jsonResp = {};
+        if (args.length != 4) {
+            throw new Error('Incorrect number of arguments. Expecting 4. Expected arguments: <SCHEMA> <TABLE_NAME> <PDB_GUID> <BATCH_ID>');
+        }
+        let result = await stub.getState(getMerkleKey(args[0], args[1], args[2], args[3]));
+        if(!result.toString()) {
+            jsonResp.Error = 'Merkle root not found for this schema , table and batch id';
+            throw new Error(JSON.stringify(jsonResp));
+        }
+        return result;
+    }
+
+    /* Append the signed digest of a table , taken after a successful
+       verification cycle , with the chain tips verified in that cycle.
+       Digests are numbered from 1 in the order they are stored , storing
+       the latest digest again is a no-op.
+    */
+    async storeDigest(stub, args, thisClass) {
+        if (args.length != 7) {
+            throw new Error('Incorrect number of arguments. Expecting 7. Expected arguments : <SCHEMA> <TABLE_NAME> <PDB_GUID> <SIGNED_BYTES> <SIGNATURE> <TIPS - JSON ARRAY OF [INSTANCE_ID, CHAIN_ID, SEQUENCE_NO, HASH]> <TIME>');
+        }
+        let digest = {};
+        digest.signed_bytes = args[3];
+        digest.signature = args[4];
+        digest.tips = [];
+        digest.time = parseInt(args[6]);
+        if (digest.signed_bytes.length <= 0 || digest.signature.length <= 0) {
+            throw new Error('signed bytes and signature must be non-empty strings');
+        }
+        if (isNaN(digest.time)) {
+            throw new Error('time must be a number. GOT : ' + args[6]);
+        }
+        let entries = JSON.parse(args[5]);
+        if (!Array.isArray(entries)) {
+            throw new Error('tips must be a JSON array');
+        }
+        for (let entry of entries) {
+            let log = buildLog(entry[0], entry[1], entry[2], 'true', entry[3]);
+            digest.tips.push({instance_id: log.instance_id, chain_id: log.chain_id, sequence_no: log.sequence_no, hash: log.got_hash});
+        }
+        let headKey = getDigestKey(args[0], args[1], args[2], 0);
+        let head = await stub.getState(headKey);
+        let count = head.toString() ? JSON.parse(head.toString('utf8')).count : 0;
+        if (count > 0) {
+            let latest = await stub.getState(getDigestKey(args[0], args[1], args[2], count));
+            if (JSON.parse(latest.toString('utf8')).signed_bytes === digest.signed_bytes) {
+                return;
+            }
+        }
+        digest.index = count + 1;
+        await stub.putState(getDigestKey(args[0], args[1], args[2], digest.index), Buffer.from(JSON.stringify(digest),'utf8'));
+        await stub.putState(headKey, Buffer.from(JSON.stringify({count: digest.index}),'utf8'));
+    }
+
+    /* Read up to 100 anchored digests of a table from an index onwards */
+    async readDigests(stub, args, thisClass) {
+        if (args.length != 4) {
+            throw new Error('Incorrect number of arguments. Expecting 4. Expected arguments: <SCHEMA> <TABLE_NAME> <PDB_GUID> <FROM_INDEX>');
+        }
+        let from = parseInt(args[3]);
+        if (isNaN(from) || from <= 0) {
+            throw new Error('from index must be a positive number. GOT : ' + args[3]);
+        }
+        let head = await stub.getState(getDigestKey(args[0], args[1], args[2], 0));
+        let result = {};
+        result.count = head.toString() ? JSON.parse(head.toString('utf8')).count : 0;
+        result.digests = [];
+        for (let index = from; index <= result.count && index < from + 100; index++) {
+            let digest = await stub.getState(getDigestKey(args[0], args[1], args[2], index));
+            result.digests.push(JSON.parse(digest.toString('utf8')));
+        }
+        return Buffer.from(JSON.stringify(result), 'utf8');
+    }
+
     /* Read the information about a previously verified row. This function
        fetches a log record specific to a blockchain table row identified by
        (instance_id, chain_id, sequence_no).
@@ -296,6 +535,37 @@ var Chaincode = class {
     }
 };
 
+/* Build the log of a verified row */
+function buildLog(inst_id, chain_id, seq_no, verification_result, got_hash, exp_hash) {
+    let log = {};
+    if (!got_hash || got_hash.length <= 0) {
+        throw new Error('hash must be a non-empty string');
+    }
+    let sequence_no = parseInt(seq_no);
+    if(isNaN(sequence_no) || !Number.isInteger(parseFloat(seq_no))){
+        throw new Error('sequence no must be a numeric string. GOT : ' + seq_no);        
+    }
+    log.instance_id = parseInt(inst_id);
+    log.chain_id = parseInt(chain_id);
+    log.sequence_no = sequence_no;
+    log.result = JSON.parse(verification_result);
+    log.got_hash = got_hash;
+    if(!log.result) {
+        if (!exp_hash || exp_hash.length <= 0) {
+            throw new Error('hash must be a non-empty string');
+        }
+        log.expected_hash = exp_hash;
+    }
+    return log;
+}
+
+/* Is a stored log , possibly empty , the same as a new log ? */
+function sameLog(stored, log) {
+    return stored != null && stored.instance_id === log.instance_id && stored.chain_id === log.chain_id
+            && stored.sequence_no === log.sequence_no && stored.result === log.result
+            && stored.got_hash === log.got_hash && stored.expected_hash === log.expected_hash;
+}
+
 /* Get the key for the appropriate bucket in case we are appending a row log */
 function getId(schema , table , pdb_guid , instance_id , chain_id , seq_no) {
     let rowHash = {};
@@ -324,6 +594,40 @@ function getId(schema , table , pdb_guid , instance_id , chain_id , seq_no) {
     return id;
 }
 
+/* Get the key of the anchored tip of a chain */
+function getAnchorKey(schema, table, pdb_guid, instance_id, chain_id) {
+    let key = {};
+    key.schema = schema;
+    key.table = table;
+    key.pdb_guid = pdb_guid;
+    key.type = 'anchor';
+    key.instance_id = instance_id;
+    key.chain_id = chain_id;
+    return JSON.stringify(key);
+}
+
+/* Get the key of the Merkle root of a batch */
+function getMerkleKey(schema, table, pdb_guid, batch_id) {
+    let key = {};
+    key.schema = schema;
+    key.table = table;
+    key.pdb_guid = pdb_guid;
+    key.type = 'merkle';
+    key.batch_id = batch_id;
+    return JSON.stringify(key);
+}
+
+/* Get the key of an anchored digest of a table , index 0 holds the number of digests */
+function getDigestKey(schema, table, pdb_guid, index) {
+    let key = {};
+    key.schema = schema;
+    key.table = table;
+    key.pdb_guid = pdb_guid;
+    key.type = 'digest';
+    key.index = index;
+    return JSON.stringify(key);
+}
+
 /* Get the key for the appropriate queue in case we are doing a special 
    operation like fetchlast100, getFailedRows etc.
 */